@@ -0,0 +1,224 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Solves the empty board of Connect3 or ConnectK for every size in a range and prints a table of the results: the
+ * game's value for the first player, their best first move, how many positions were searched and cached and how long
+ * it took. The sizes are solved at the same time on a shared pool of threads, largest first so that a big board is
+ * not left running alone at the end, and each has its own Solver and cache.
+ *
+ * @author Jeff DeSain
+ */
+public class BoardSweep
+{
+    private static final String USAGE = "Usage: java BoardSweep [-threads n] [-mode full|pvs|mtdf] [-time seconds]"
+            + " [-table table] connect3 min_width min_height max_width max_height"
+            + " | connectk min_width min_height max_width max_height k"; //Usage statement
+
+    private final String name; //connect3 or connectk
+    private final int k; //Pieces in a row needed to win, for connectk
+    private final int mode; //How each size is searched, see Solver.setMode
+    private final long limitMillis; //Most milliseconds for one size, 0 for no limit
+    private final String table; //Description of each size's cache, see TranspositionTable.create
+
+
+    /**
+     * @param name connect3 or connectk
+     * @param k Pieces in a row needed to win, ignored for connect3
+     * @param mode How each size is searched, see Solver.setMode
+     * @param limitMillis Most milliseconds for one size, 0 for no limit
+     * @param table Description of each size's cache, see TranspositionTable.create
+     */
+    public BoardSweep(String name, int k, int mode, long limitMillis, String table)
+    {
+        if(!name.equals("connect3") && !name.equals("connectk"))
+            throw new IllegalArgumentException("Only connect3 and connectk have board sizes");
+        if(limitMillis < 0)
+            throw new IllegalArgumentException("Time limit cannot be negative");
+        TranspositionTable.create(table);
+
+        this.name = name;
+        this.k = k;
+        this.mode = mode;
+        this.limitMillis = limitMillis;
+        this.table = table;
+    }
+
+    public static void main(String[] args)
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int mode = Solver.PVS;
+        long limit = 0;
+        String table = "unbounded";
+        BoardSweep sweep = null;
+        int[] range = new int[4];
+        int first = 0;
+
+        try
+        {
+            while(first + 1 < args.length && args[first].startsWith("-"))
+            {
+                if(args[first].equals("-threads"))
+                    threads = Integer.parseInt(args[first + 1]);
+                else if(args[first].equals("-mode"))
+                    mode = Arrays.asList("full", "pvs", "mtdf").indexOf(args[first + 1]);
+                else if(args[first].equals("-time"))
+                    limit = Long.parseLong(args[first + 1]) * 1000;
+                else if(args[first].equals("-table"))
+                    table = args[first + 1];
+                else
+                    throw new IllegalArgumentException();
+                first += 2;
+            }
+
+            int count = args.length - first - 1;
+            if(threads < 1 || mode < 0 || count != (first < args.length && args[first].equals("connectk") ? 5 : 4))
+                throw new IllegalArgumentException();
+            for(int i = 0; i < 4; i++)
+                range[i] = Integer.parseInt(args[first + 1 + i]);
+            if(range[0] < 1 || range[1] < 1 || range[2] < range[0] || range[3] < range[1])
+                throw new IllegalArgumentException();
+
+            sweep = new BoardSweep(args[first], count == 5 ? Integer.parseInt(args[first + 5]) : 3, mode, limit,
+                    table);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        long start = System.nanoTime();
+        List<Row> rows = sweep.solve(range[0], range[1], range[2], range[3], threads);
+        System.out.printf("%-7s %-6s %6s %14s %12s %10s%n", "size", "value", "move", "positions", "cached", "ms");
+        for(Row row : rows)
+            System.out.println(row);
+        System.out.println(rows.size() + " sizes on " + threads + " threads in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Solves every board size in a range
+     *
+     * @param minWidth Fewest columns
+     * @param minHeight Fewest rows
+     * @param maxWidth Most columns
+     * @param maxHeight Most rows
+     * @param threads Number of sizes solved at once
+     * @return One row per size, in order of width and then height
+     */
+    public List<Row> solve(int minWidth, int minHeight, int maxWidth, int maxHeight, int threads)
+    {
+        List<int[]> sizes = new ArrayList<int[]>();
+        for(int width = minWidth; width <= maxWidth; width++)
+            for(int height = minHeight; height <= maxHeight; height++)
+                sizes.add(new int[]{width, height});
+
+        //Largest boards first, so the pool is never waiting on one big board started last
+        List<int[]> order = new ArrayList<int[]>(sizes);
+        order.sort((a, b) -> b[0] * b[1] - a[0] * a[1]);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        Map<String, Future<Row>> results = new HashMap<String, Future<Row>>();
+        try
+        {
+            for(int[] size : order)
+                results.put(size[0] + "x" + size[1], executor.submit(() -> solve(size[0], size[1], timer)));
+
+            List<Row> rows = new ArrayList<Row>();
+            for(int[] size : sizes)
+                rows.add(results.get(size[0] + "x" + size[1]).get());
+            return rows;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Sweep interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Solves one empty board, giving up once the time limit has passed
+     *
+     * @param width Number of columns
+     * @param height Number of rows
+     * @param timer Stops searches that run past the limit
+     * @return The size's row
+     */
+    private Row solve(int width, int height, ScheduledExecutorService timer)
+    {
+        Game game = name.equals("connect3") ? new Connect3(Games.emptyBoard(width, height), true)
+                : new ConnectK(width, height, k, true);
+        Solver solver = new Solver(game, TranspositionTable.create(table));
+        solver.setMode(mode);
+
+        //The alarm stops this size's solver rather than interrupting the pool thread, which may be on the next size by
+        //the time an alarm that was already running gets to it
+        ScheduledFuture<?> alarm = limitMillis == 0 ? null
+                : timer.schedule(solver::stop, limitMillis, TimeUnit.MILLISECONDS);
+        Row row = new Row(width, height);
+        long start = System.nanoTime();
+        try
+        {
+            Node move = solver.getMove();
+            row.value = move.getScore();
+            row.column = DistributedSolver.column(move);
+        }
+        catch(CancellationException e)
+        {
+            row.timedOut = true;
+        }
+        finally
+        {
+            if(alarm != null)
+                alarm.cancel(false);
+        }
+
+        row.millis = (System.nanoTime() - start) / 1000000;
+        row.positions = solver.getNodeCount();
+        row.cached = solver.getCache().size();
+        return row;
+    }
+
+
+    /**
+     * Result of solving one board size
+     */
+    public static final class Row
+    {
+        public final int width; //Number of columns
+        public final int height; //Number of rows
+        public int value; //Score for the first player, 1 win, -1 loss, 0 tie
+        public int column = -1; //Best first move, -1 if the search did not finish
+        public boolean timedOut; //True if the search ran past the time limit
+        public long positions; //Configurations searched
+        public long cached; //Scores in the cache at the end
+        public long millis; //Time taken
+
+        Row(int width, int height)
+        {
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * @return The row as a line of the results table
+         */
+        public String toString()
+        {
+            return String.format("%-7s %-6s %6s %14d %12d %10d", width + "x" + height,
+                    timedOut ? "?" : value > 0 ? "win" : value < 0 ? "loss" : "tie",
+                    timedOut ? "-" : String.valueOf(column), positions, cached, millis);
+        }
+    }
+}
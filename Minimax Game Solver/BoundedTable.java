@@ -0,0 +1,71 @@
+/**
+ * Transposition table with a fixed size in megabytes, kept in two primitive arrays on the Java heap. See PackedTable
+ * for how entries are replaced.
+ *
+ * @author Jeff DeSain
+ */
+public class BoundedTable extends PackedTable
+{
+    public static final int ENTRY_BYTES = 12; //A long key and an int of data
+    private static final int MAX_BUCKETS = 1 << 29; //Keeps the arrays within Java's size limit
+
+    private final long[] keys; //Key XOR data for each slot
+    private final int[] data; //Packed score, work and age for each slot, 0 if empty
+
+
+    /**
+     * @param megabytes Most memory the table may use
+     */
+    public BoundedTable(int megabytes)
+    {
+        this(bucketsFor((long)megabytes * 1024 * 1024, ENTRY_BYTES, MAX_BUCKETS));
+    }
+
+    /**
+     * @param buckets Number of buckets, a power of two
+     */
+    private BoundedTable(long buckets)
+    {
+        super(buckets);
+        keys = new long[(int)buckets * 2];
+        data = new int[(int)buckets * 2];
+    }
+
+    /**
+     * Reads the key stored in a slot
+     *
+     * @param slot The slot
+     * @return The stored key
+     */
+    @Override
+    protected long readKey(long slot)
+    {
+        return keys[(int)slot];
+    }
+
+    /**
+     * Reads the data stored in a slot
+     *
+     * @param slot The slot
+     * @return The packed data, 0 if the slot is empty
+     */
+    @Override
+    protected int readData(long slot)
+    {
+        return data[(int)slot];
+    }
+
+    /**
+     * Writes a slot
+     *
+     * @param slot The slot
+     * @param storedKey The real key XOR d
+     * @param d The packed data
+     */
+    @Override
+    protected void writeSlot(long slot, long storedKey, int d)
+    {
+        keys[(int)slot] = storedKey;
+        data[(int)slot] = d;
+    }
+}
@@ -0,0 +1,307 @@
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Transposition table that keeps a checkpoint of another table in a file, so a long solve that is stopped can be
+ * resumed. Solver's search is recursive, and the score of every finished subtree is stored in the cache, so the cache
+ * is the search's progress: a restarted search walks back down to where the last one stopped through cache hits and
+ * carries on from the deepest unfinished subtree.
+ *
+ * Scores stored with at least a set amount of work are queued and appended to the file by a background thread at a
+ * fixed interval, so the search threads never wait on the disk. Cheaper scores are left out; they take less time to
+ * search again than to read. The file starts with the game's description and then holds one ten byte record per
+ * score, so a record cut short by a crash is simply ignored and overwritten.
+ *
+ * @author Jeff DeSain
+ */
+public class CheckpointTable implements TranspositionTable
+{
+    private static final String USAGE = "Usage: java CheckpointTable [-every seconds] [-work n] [-mode full|pvs|mtdf]"
+            + " [-table table] file " + Games.USAGE; //Usage statement
+    private static final int MAGIC = 0x434b5054; //Start of every checkpoint file, CKPT
+    private static final int RECORD = 10; //Bytes per score: key, score and work
+    public static final int DEFAULT_WORK = 6; //Default least work saved, subtrees of about 64 configurations
+    public static final long DEFAULT_INTERVAL = 10000; //Default milliseconds between checkpoints
+
+    private final TranspositionTable table; //The table being checkpointed
+    private final int minWork; //Least work of a score that is saved
+    private final ConcurrentLinkedQueue<long[]> pending = new ConcurrentLinkedQueue<long[]>();
+                                                         //Scores not yet written, as key and score << 8 | work
+    private final ScheduledExecutorService writer; //Appends the pending scores to the file
+    private final FileOutputStream file; //The checkpoint file, opened for appending
+    private final DataOutputStream out; //Writes records to file
+    private final long resumed; //Scores read back from the file when the table was created
+    private final AtomicLong saved = new AtomicLong(); //Scores written to the file by this table
+    private volatile boolean closed; //True once close has been called
+
+
+    /**
+     * Reads the scores already in the checkpoint file, if there is one, into the table and starts checkpointing
+     *
+     * @param table The table being checkpointed
+     * @param fileName The checkpoint file
+     * @param game Description of the game, so a checkpoint is never resumed for a different one
+     * @param minWork Least work of a score that is saved, see TranspositionTable.store
+     * @param intervalMillis Milliseconds between checkpoints
+     * @throws IOException If the file cannot be read or written, or was written for a different game
+     */
+    public CheckpointTable(TranspositionTable table, String fileName, String game, int minWork, long intervalMillis)
+            throws IOException
+    {
+        if(intervalMillis < 1)
+            throw new IllegalArgumentException("Need an interval of at least 1 ms");
+
+        this.table = table;
+        this.minWork = minWork;
+        this.resumed = resume(table, fileName, game);
+
+        file = new FileOutputStream(fileName, true);
+        out = new DataOutputStream(new BufferedOutputStream(file));
+        if(resumed < 0)
+        {
+            out.writeInt(MAGIC);
+            out.writeUTF(game);
+            out.flush();
+        }
+
+        writer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint " + fileName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::checkpoint, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static void main(String[] args)
+    {
+        long every = DEFAULT_INTERVAL;
+        int work = DEFAULT_WORK;
+        int mode = Solver.FULL_WINDOW;
+        String spec = "unbounded";
+        String fileName = null;
+        Game game = null;
+        int first = 0;
+
+        try
+        {
+            while(first + 1 < args.length && args[first].startsWith("-"))
+            {
+                if(args[first].equals("-every"))
+                    every = Long.parseLong(args[first + 1]) * 1000;
+                else if(args[first].equals("-work"))
+                    work = Integer.parseInt(args[first + 1]);
+                else if(args[first].equals("-mode"))
+                    mode = Arrays.asList("full", "pvs", "mtdf").indexOf(args[first + 1]);
+                else if(args[first].equals("-table"))
+                    spec = args[first + 1];
+                else
+                    throw new IllegalArgumentException();
+                first += 2;
+            }
+            if(mode < 0 || first >= args.length)
+                throw new IllegalArgumentException();
+            fileName = args[first];
+            game = Games.parse(args, first + 1);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        CheckpointTable cache = null;
+        try
+        {
+            cache = new CheckpointTable(TranspositionTable.create(spec), fileName,
+                    String.join(" ", Arrays.copyOfRange(args, first + 1, args.length)), work, every);
+        }
+        catch(IllegalArgumentException | IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        }
+
+        //Stopping the process with Ctrl-C still writes everything solved so far
+        CheckpointTable checkpoint = cache;
+        Runtime.getRuntime().addShutdownHook(new Thread(checkpoint::close));
+
+        System.out.println(game);
+        System.out.println("Resumed " + Math.max(0, cache.getResumed()) + " scores from " + fileName);
+
+        Solver solver = new Solver(game, cache);
+        solver.setMode(mode);
+        long start = System.nanoTime();
+        Node move = solver.getMove();
+        long elapsed = System.nanoTime() - start;
+
+        cache.close();
+        System.out.println("Score: " + move.getScore());
+        System.out.println("Best move:" + System.lineSeparator() + move.getData());
+        System.out.println(solver.getNodeCount() + " positions searched in " + elapsed / 1000000 + " ms, "
+                + cache.getSaved() + " scores checkpointed");
+    }
+
+    /**
+     * Reads a checkpoint file into a table, cutting off a record left unfinished by a crash
+     *
+     * @param table The table
+     * @param fileName The checkpoint file
+     * @param game Description of the game
+     * @return Number of scores read, or -1 if there was no checkpoint
+     * @throws IOException If the file cannot be read or was written for a different game
+     */
+    private static long resume(TranspositionTable table, String fileName, String game) throws IOException
+    {
+        File checkpoint = new File(fileName);
+        if(checkpoint.length() == 0)
+            return -1;
+
+        long header = 6 + game.getBytes(StandardCharsets.UTF_8).length;
+        long records = (checkpoint.length() - header) / RECORD;
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint))))
+        {
+            if(checkpoint.length() < header || in.readInt() != MAGIC || !in.readUTF().equals(game))
+                throw new IOException(fileName + " is not a checkpoint of " + game);
+
+            for(long i = 0; i < records; i++)
+            {
+                long key = in.readLong();
+                int score = in.readByte();
+                int work = in.readByte();
+                table.store(key, score, work);
+            }
+        }
+
+        try(RandomAccessFile truncate = new RandomAccessFile(checkpoint, "rw"))
+        {
+            truncate.setLength(header + records * RECORD);
+        }
+        return records;
+    }
+
+    /**
+     * Writes the pending scores to the file and makes sure they reach the disk
+     */
+    private synchronized void checkpoint()
+    {
+        try
+        {
+            long count = 0;
+            long[] entry;
+            while((entry = pending.poll()) != null)
+            {
+                out.writeLong(entry[0]);
+                out.writeByte((int)(entry[1] >> 8));
+                out.writeByte((int)entry[1] & 0xff);
+                count++;
+            }
+
+            if(count > 0)
+            {
+                out.flush();
+                file.getFD().sync();
+                saved.addAndGet(count);
+            }
+        }
+        catch(IOException e)
+        {
+            //Keep searching, the scores are still in the table
+            System.err.println("Checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the last pending scores and closes the file. Scores stored after this are no longer saved.
+     */
+    public synchronized void close()
+    {
+        if(closed)
+            return;
+
+        writer.shutdownNow();
+        checkpoint();
+        closed = true;
+        try
+        {
+            out.close();
+        }
+        catch(IOException e)
+        {
+            System.err.println("Checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Scores read back from the file when the table was created, -1 if there was no checkpoint
+     */
+    public long getResumed()
+    {
+        return resumed;
+    }
+
+    /**
+     * @return Scores written to the file by this table
+     */
+    public long getSaved()
+    {
+        return saved.get();
+    }
+
+    /**
+     * Finds the score of a configuration
+     *
+     * @param key The configuration's key
+     * @return The stored score, or MISS
+     */
+    @Override
+    public int lookup(long key)
+    {
+        return table.lookup(key);
+    }
+
+    /**
+     * Saves the score of a configuration, queueing it for the next checkpoint if it took enough work
+     *
+     * @param key The configuration's key
+     * @param score 1 if the player to move wins, -1 if they lose, 0 if tie, or a bound
+     * @param work How much searching the score took
+     */
+    @Override
+    public void store(long key, int score, int work)
+    {
+        table.store(key, score, work);
+        if(work >= minWork && !closed)
+            pending.add(new long[]{key, (long)score << 8 | work & 0xff});
+    }
+
+    /**
+     * Starts a new search
+     */
+    @Override
+    public void newSearch()
+    {
+        table.newSearch();
+    }
+
+    /**
+     * @return Number of configurations stored
+     */
+    @Override
+    public long size()
+    {
+        return table.size();
+    }
+
+    /**
+     * @return Fraction of lookups that found a score
+     */
+    @Override
+    public double hitRate()
+    {
+        return table.hitRate();
+    }
+}
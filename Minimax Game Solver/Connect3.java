@@ -1,6 +1,6 @@
 import java.io.*;
 import java.util.*;
-import java.util.zip.CheckedInputStream;
+import java.util.concurrent.*;
 
 /**
  * Simulates the game connect 3. Players alternate dropping a piece into the game board. The first to connect three
@@ -8,33 +8,32 @@ import java.util.zip.CheckedInputStream;
  *
  * @author Jeff DeSain
  */
-public class Connect3 implements Game
+public class Connect3 implements RetrogradeGame, Playout, Heuristic
 {
 
-    private static final String USAGE = "Usage: java Connect3 [play] -"; //Usage statement
+    private static final String USAGE = "Usage: java Connect3 [-strategy file] [play] -"; //Usage statement
     private static final char ONE = 'X'; //Character used for player
     private static final char TWO = 'O'; //Charcter used for AI
     private static final char EMPTY = '.'; //Character used for open space
+    private static final int[] LINE_WEIGHTS = {0, 1, 8, 64}; //Value of a line holding 0 to 3 pieces of one player only
+    private static final int[] LINE_VALUES = lineValues(); //Value for X of a line, indexed by its count
+    private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}}; //Column and row steps of a line
 
-    private static int playerStart; //Used to determine whose turn it is
-
-    private char[][] board; //The board
+    private Position position; //The current position
+    private final boolean xFirst; //True if X moves when both players have the same number of pieces
 
 
     /**
+     * Whose turn it is follows from the pieces on the board: the player with fewer pieces moves, and xFirst decides
+     * when both have placed the same number.
      *
      * @param board The board
+     * @param xFirst True if X moves when both players have the same number of pieces
      */
-    public Connect3(char[][] board)
+    public Connect3(char[][] board, boolean xFirst)
     {
-        this.board = new char[board.length][board[0].length];
-        for(int i = 0; i < board.length; i++)
-        {
-            for(int j = 0; j < board[0].length; j++)
-            {
-                this.board[i][j] = board[i][j];
-            }
-        }
+        this.position = new Position(board, xFirst);
+        this.xFirst = xFirst;
     }
 
 
@@ -45,6 +44,13 @@ public class Connect3 implements Game
         Solver solver;
         boolean play = false;
         char[][] initialPosition = new char[0][0];
+        String strategyFile = null; //Strategy followed instead of searching wherever it covers the position
+
+        if(args.length >= 2 && args[0].equals("-strategy"))
+        {
+            strategyFile = args[1];
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
 
         //Ensure valid command line arguments
         if(args.length == 1)
@@ -80,72 +86,49 @@ public class Connect3 implements Game
             System.exit(-1);
         }
 
-        currentGame = new Connect3(initialPosition);
-
-        char[][] startBoard = (char[][])currentGame.getCurrentPosition().getData();
-
-        int xCount = 0;
-        int oCount = 0;
-        //Used to determine whose turn it is
-        for(int i = 0; i < startBoard.length; i++)
+        //The player is X and moves first on an even board in play mode, otherwise the AI as O does
+        currentGame = null;
+        try
         {
-            for(int j = 0; j < startBoard[0].length; j++)
-            {
-                if(startBoard[i][j] == 'X')
-                    xCount++;
-
-                if(startBoard[i][j] == 'O')
-                    oCount++;
-            }
+            currentGame = new Connect3(initialPosition, play);
         }
-
-        if(xCount > oCount)
-            playerStart = -1;
-        else if(oCount > xCount)
-            playerStart = 1;
-        else
+        catch(IllegalArgumentException e)
         {
-            if(play)
-                playerStart = 2;
-            else
-                playerStart = -2;
-
+            System.err.println(e.getMessage());
+            System.exit(-1);
         }
 
-
         solver = new Solver(currentGame);
+        Ponderer ponderer = new Ponderer(currentGame, solver); //Searches while the player thinks
+        Strategy strategy = null; //Moves chosen ahead of time, null if there are none
+        if(strategyFile != null)
+        {
+            try
+            {
+                strategy = Strategy.load(currentGame, "connect3 " + initialPosition.length + " "
+                        + initialPosition[0].length, strategyFile);
+            }
+            catch(IOException e)
+            {
+                System.err.println(e.getMessage());
+                System.exit(-1);
+            }
+        }
 
         boolean nextMoveOnly = !play;
         boolean valid = false;
         int playerMove = 0;
-        char[][] cpuMove;
+        Position cpuMove;
 
         //If no 'play' argument
         if(nextMoveOnly)
         {
             System.out.println(currentGame);
-            cpuMove = (char[][]) solver.getMove().getData();
-            int cpuCol = 0;
-
-            char[][] currentPosition = (char[][]) currentGame.getCurrentPosition().getData();
-
-            //Determine where the AI went
-            for (int i = 0; i < currentPosition.length; i++) {
-                for (int j = 0; j < currentPosition[0].length; j++) {
-                    if (cpuMove[i][j] != currentPosition[i][j]) {
-                        cpuCol = i;
-                    }
-                }
-            }
-
-            System.out.println("CPU plays in column " + cpuCol);
+            cpuMove = (Position) Strategy.getMove(strategy, solver, currentGame).getData();
 
-            char[][] newBoard = new char[cpuMove.length][cpuMove[0].length];
+            System.out.println("CPU plays in column " + cpuMove.getLastColumn());
 
-            for (int i = 0; i < newBoard.length; i++)
-                System.arraycopy(cpuMove[i], 0, newBoard[i], 0, newBoard[i].length);
-
-            currentGame.update(new Node<char[][]>(newBoard));
+            currentGame.update(new Node<Position>(cpuMove));
 
 
             System.out.println(currentGame);
@@ -157,6 +140,9 @@ public class Connect3 implements Game
                 //Gets the player's move, confirms it is valid, and then makes the move
                 if (play) {
                     valid = false;
+                    //A strategy answers every position it covers without searching, so there is nothing to ponder
+                    if(strategy == null)
+                        ponderer.start();
                     while (!valid) {
                         System.out.print("Your move: ");
                         try {
@@ -172,43 +158,19 @@ public class Connect3 implements Game
                             System.out.println("Must choose a valid column");
                         }
                     }
+                    ponderer.stop();
 
-                    char[][] currentBoard = (char[][]) currentGame.getCurrentPosition().getData();
-                    char[][] newBoard = new char[currentBoard.length][currentBoard[0].length];
-
-                    for (int i = 0; i < newBoard.length; i++)
-                        System.arraycopy(currentBoard[i], 0, newBoard[i], 0, newBoard[i].length);
-
-                    int index;
-                    for(index = newBoard[0].length - 1; index >= 0 && newBoard[playerMove][index] != EMPTY; index--);
+                    Position currentPosition = (Position) currentGame.getCurrentPosition().getData();
 
-                    newBoard[playerMove][index] = ONE;
-
-                    currentGame.update(new Node<char[][]>(newBoard));
+                    currentGame.update(new Node<Position>(currentPosition.play(playerMove)));
                 }
                 //Gets the AI move and then makes it
                 else {
-                    cpuMove = (char[][]) solver.getMove().getData();
-                    int cpuCol = 0;
+                    cpuMove = (Position) Strategy.getMove(strategy, solver, currentGame).getData();
 
-                    char[][] currentPosition = (char[][]) currentGame.getCurrentPosition().getData();
+                    System.out.println("CPU plays in column " + cpuMove.getLastColumn());
 
-                    for (int i = 0; i < currentPosition.length; i++) {
-                        for (int j = 0; j < currentPosition[0].length; j++) {
-                            if (cpuMove[i][j] != currentPosition[i][j]) {
-                                cpuCol = i;
-                            }
-                        }
-                    }
-
-                    System.out.println("CPU plays in column " + cpuCol);
-
-                    char[][] newBoard = new char[cpuMove.length][cpuMove[0].length];
-
-                    for (int i = 0; i < newBoard.length; i++)
-                        System.arraycopy(cpuMove[i], 0, newBoard[i], 0, newBoard[i].length);
-
-                    currentGame.update(new Node<char[][]>(newBoard));
+                    currentGame.update(new Node<Position>(cpuMove));
                 }
 
                 play = !play;
@@ -366,16 +328,7 @@ public class Connect3 implements Game
      */
     public boolean isValid(int col)
     {
-        boolean valid = false;
-
-        //There must be an open space in the chosen column
-        for(char c: board[col])
-        {
-            if (c == '.')
-                valid = true;
-        }
-
-        return valid;
+        return position.isOpen(col);
     }
 
     /**
@@ -384,18 +337,7 @@ public class Connect3 implements Game
      */
     public String toString()
     {
-        String answer = "";
-
-        for(int j = 0; j < board[0].length; j++)
-        {
-            for(int i = 0; i < board.length; i++)
-            {
-                answer += board[i][j] + " ";
-            }
-            answer += System.lineSeparator();
-        }
-
-        return answer;
+        return position.toString();
     }
 
 
@@ -408,71 +350,176 @@ public class Connect3 implements Game
     @Override
     public ArrayList<Node> getNeighbors(Node n)
     {
-        char[][] aBoard = (char[][])n.getData();
-
+        Position aPosition = (Position)n.getData();
         ArrayList<Node> neighbors = new ArrayList<Node>();
-        ArrayList<Character> column;
-        int index;
-        boolean playerMove;
 
-        int xCount = 0;
-        int oCount = 0;
+        //For each column, if there is an empty space, place a piece
+        for(int i = 0; i < aPosition.getWidth(); i++)
+        {
+            if(aPosition.isOpen(i))
+                neighbors.add(new Node<Position>(aPosition.play(i)));
+        }
+
+        return neighbors;
+    }
+
+    /**
+     * Returns the moves worth searching, using threats to cut them down before anything is searched:
+     *   a move that wins at once is the only move searched
+     *   otherwise, a space where the opponent would win next turn must be blocked, and with two such spaces the game
+     *   is lost whatever is played, so one move is enough
+     *   otherwise, moves that let the opponent win by playing on top of them are left out, unless every move does
+     *   a move that makes two threats at once then wins, since the opponent has no win of their own and can only
+     *   block one, so it is the only move searched and is proven three moves later without any branching
+     *   otherwise the rest are searched
+     *
+     * @param n A particular configuration, not a goal
+     * @return The configurations to search from n
+     */
+    @Override
+    public Iterable<Node> moves(Node n)
+    {
+        Position aPosition = (Position)n.getData();
+        char me = aPosition.toMove;
+        char them = me == ONE ? TWO : ONE;
+        int threat = -1;
+
+        for(int i = 0; i < aPosition.getWidth(); i++)
+        {
+            if(aPosition.isOpen(i) && completesLine(aPosition, i, aPosition.open[i] - 1, me))
+                return Collections.singletonList(new Node<Position>(aPosition.play(i)));
+        }
 
-        for(int i = 0; i < aBoard.length; i++)
+        for(int i = 0; i < aPosition.getWidth(); i++)
         {
-            for(int j = 0; j < aBoard[0].length; j++)
+            if(aPosition.isOpen(i) && completesLine(aPosition, i, aPosition.open[i] - 1, them))
             {
-                if(aBoard[i][j] == 'X')
-                    xCount++;
-
-                if(aBoard[i][j] == 'O')
-                    oCount++;
+                if(threat != -1)
+                    break;
+                threat = i;
             }
         }
+        if(threat != -1)
+            return Collections.singletonList(new Node<Position>(aPosition.play(threat)));
 
-        //Figure out which symbol should be used
-        if(xCount > oCount)
-            playerMove = false;
-        else if(xCount < oCount)
-            playerMove = true;
-        else {
-            if (playerStart == 1)
-                playerMove = false;
-            else if(playerStart == -1)
-                playerMove = true;
-            else if(playerStart == 2)
-                playerMove = true;
+        ArrayList<Node> others = new ArrayList<Node>();
+        Node losing = null;
+        for(int i = 0; i < aPosition.getWidth(); i++)
+        {
+            if(!aPosition.isOpen(i))
+                continue;
+
+            int row = aPosition.open[i] - 1;
+            Position next = aPosition.play(i);
+            if(row > 0 && completesLine(next, i, row - 1, them))
+                losing = new Node<Position>(next);
+            else if(threats(next, me) >= 2)
+                return Collections.singletonList(new Node<Position>(next));
             else
-                playerMove = false;
+                others.add(new Node<Position>(next));
         }
 
+        if(others.isEmpty() && losing != null)
+            others.add(losing);
+        return others;
+    }
 
-        //For each column, if there is an empty space, place a piece
-        for(int i = 0; i < aBoard.length; i++)
+    /**
+     * Counts the spaces where a player could win on their next move
+     *
+     * @param aPosition The position
+     * @param piece The player
+     * @return Number of open columns where dropping piece makes three in a row
+     */
+    private static int threats(Position aPosition, char piece)
+    {
+        int count = 0;
+        for(int i = 0; i < aPosition.getWidth(); i++)
         {
-            column = new ArrayList<Character>();
+            if(aPosition.isOpen(i) && completesLine(aPosition, i, aPosition.open[i] - 1, piece))
+                count++;
+        }
+        return count;
+    }
 
-            for(int j = 0; j < aBoard[0].length; j++)
+    /**
+     * Checks whether a piece in an empty space would make three in a row, looking only at lines through that space
+     *
+     * @param aPosition The position
+     * @param col Column of the space
+     * @param row Row of the space
+     * @param piece The piece
+     * @return True if the piece would complete a line
+     */
+    private static boolean completesLine(Position aPosition, int col, int row, char piece)
+    {
+        for(int[] d : DIRECTIONS)
+        {
+            int count = 1;
+            for(int sign = -1; sign <= 1; sign += 2)
             {
-                column.add(aBoard[i][j]);
+                int i = col + sign * d[0];
+                int j = row + sign * d[1];
+                while(count < 3 && i >= 0 && i < aPosition.board.length && j >= 0 && j < aPosition.board[0].length
+                        && aPosition.board[i][j] == piece)
+                {
+                    count++;
+                    i += sign * d[0];
+                    j += sign * d[1];
+                }
             }
+            if(count >= 3)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether neither player can ever make three in a row. Every line of three spaces is dead if it
+     * already holds both players' pieces, or if it needs more of a player's pieces than that player has moves left.
+     *
+     * @param n A particular configuration
+     * @return True if the game can only be a tie
+     */
+    @Override
+    public boolean isDraw(Node n)
+    {
+        Position aPosition = (Position)n.getData();
+        char[][] aBoard = aPosition.board;
+        int empty = aPosition.getEmpty();
 
-            index = column.lastIndexOf('.');
-            if(index != -1)
+        //The player to move gets the extra move when an odd number of spaces is left
+        int xMoves = aPosition.toMove == ONE ? (empty + 1) / 2 : empty / 2;
+        int oMoves = empty - xMoves;
+
+        for(int[] d : DIRECTIONS)
+        {
+            for(int i = 0; i < aBoard.length; i++)
             {
-                Connect3 newPosition = new Connect3(aBoard);
-                if(playerMove)
+                for(int j = 0; j < aBoard[0].length; j++)
                 {
-                    newPosition.board[i][index] = 'X';
-                }
-                else
-                    newPosition.board[i][index] = 'O';
+                    int endI = i + 2 * d[0];
+                    int endJ = j + 2 * d[1];
+                    if(endI >= aBoard.length || endJ < 0 || endJ >= aBoard[0].length)
+                        continue;
+
+                    int x = 0;
+                    int o = 0;
+                    for(int k = 0; k < 3; k++)
+                    {
+                        char c = aBoard[i + k * d[0]][j + k * d[1]];
+                        if(c == ONE)
+                            x++;
+                        else if(c == TWO)
+                            o++;
+                    }
 
-                neighbors.add(new Node<char[][]>(newPosition.board));
+                    if(o == 0 && 3 - x <= xMoves || x == 0 && 3 - o <= oMoves)
+                        return false;
+                }
             }
         }
-
-        return neighbors;
+        return true;
     }
 
     /**
@@ -486,7 +533,7 @@ public class Connect3 implements Game
     {
         boolean isGoal = false;
 
-        char[][] aBoard = (char[][])n.getData();
+        char[][] aBoard = ((Position)n.getData()).board;
 
         //check vertical
         for(int i = 0; i < aBoard.length && !isGoal; i++)
@@ -532,42 +579,306 @@ public class Connect3 implements Game
 
 
     /**
-     * Updates the game after a move has been made
+     * Gets a 64 bit key identifying a configuration
      *
-     * @param n The new configuration after a move has been made
+     * @param n A particular configuration
+     * @return The configuration's key
      */
     @Override
-    public void update(Node n)
+    public long hashKey(Node n)
     {
-        board = (char[][])n.getData();
+        return ((Position)n.getData()).longHash();
     }
 
     /**
-     * Checks if the current game is over
+     * Estimates how hard a configuration is to solve
      *
-     * @return True if the game is over, false otherwise
+     * @param n A particular configuration
+     * @return The number of empty spaces
      */
     @Override
-    public boolean gameOver() {
-        int emptyCount = 0;
-        boolean gameOver = false;
+    public int movesLeft(Node n)
+    {
+        return ((Position)n.getData()).getEmpty();
+    }
+
+    /**
+     * Configurations are numbered column by column, height + 1 bits per column. A column's bits are a 1 above its
+     * pieces from the bottom up, with a 1 for each X and a 0 for each O.
+     *
+     * @return Number of configuration indexes for boards the size of this game's
+     */
+    @Override
+    public long stateCount()
+    {
+        int total = position.getWidth() * (position.getHeight() + 1);
+        return total >= 63 ? Long.MAX_VALUE : 1L << total;
+    }
 
-        //If there are no empty spaces, the game is a tie
-        for(char[] chars: board)
+    /**
+     * Gets the configuration with a given index
+     *
+     * @param index A number from 0 to stateCount() - 1
+     * @return The configuration, or null if a column has no marker bit or the piece counts cannot happen
+     */
+    @Override
+    public Node position(long index)
+    {
+        int width = position.getWidth();
+        int height = position.getHeight();
+        char[][] board = new char[width][height];
+        int x = 0;
+        int o = 0;
+
+        for(int i = 0; i < width; i++)
         {
-            for(char c : chars)
+            //Columns can be up to 64 bits, so they are masked without shifting a 1 past the top of a long
+            long column = index >>> (i * (height + 1)) & -1L >>> (63 - height);
+            if(column == 0)
+                return null;
+
+            int filled = 63 - Long.numberOfLeadingZeros(column);
+            for(int j = 0; j < height; j++)
             {
-                if (c == EMPTY)
-                    emptyCount++;
+                //Row 0 is the top
+                int fromBottom = height - 1 - j;
+                if(fromBottom >= filled)
+                    board[i][j] = EMPTY;
+                else if((column >>> fromBottom & 1) == 1)
+                {
+                    board[i][j] = ONE;
+                    x++;
+                }
+                else
+                {
+                    board[i][j] = TWO;
+                    o++;
+                }
+            }
+        }
+
+        int lead = xFirst ? x - o : o - x;
+        if(lead != 0 && lead != 1)
+            return null;
+
+        return new Node<Position>(new Position(board, xFirst));
+    }
+
+    /**
+     * Gets the index of a configuration
+     *
+     * @param n A particular configuration
+     * @return Its index, or -1 if the board is a different size or the wrong player is to move for this game
+     */
+    @Override
+    public long index(Node n)
+    {
+        Position aPosition = (Position)n.getData();
+        int height = aPosition.getHeight();
+        if(aPosition.getWidth() != position.getWidth() || height != position.getHeight())
+            return -1;
+
+        //The index only holds the board, so a position made with the other player moving first has no index here
+        char mover = aPosition.xCount > aPosition.oCount ? TWO : aPosition.oCount > aPosition.xCount ? ONE
+                : xFirst ? ONE : TWO;
+        if(aPosition.toMove != mover)
+            return -1;
+
+        long index = 0;
+        for(int i = aPosition.getWidth() - 1; i >= 0; i--)
+        {
+            long column = 0;
+            int filled = 0;
+            for(int j = height - 1; j >= aPosition.open[i]; j--)
+            {
+                if(aPosition.board[i][j] == ONE)
+                    column |= 1L << filled;
+                filled++;
             }
+            index = index << (height + 1) | 1L << filled | column;
         }
-        if(emptyCount == 0)
-            gameOver = true;
+        return index;
+    }
+
+    /**
+     * @return Bits in a configuration index, height + 1 per column, or 0 if that is more than a long holds
+     */
+    @Override
+    public int codeBits()
+    {
+        int total = position.getWidth() * (position.getHeight() + 1);
+        return total <= 64 ? total : 0;
+    }
 
-        if(!gameOver)
-            gameOver = isGoal(new Node<char[][]>(board));
+    /**
+     * Packs a configuration into a long, the same as its index. Marking the top of each column takes fewer bits than
+     * writing every space in base 3 once a board has more than two rows.
+     *
+     * @param n A particular configuration
+     * @return Its index
+     */
+    @Override
+    public long encode(Node n)
+    {
+        Position aPosition = (Position)n.getData();
+        if(codeBits() == 0)
+            throw new UnsupportedOperationException("Board too large to encode");
+        long index = index(n);
+        if(index == -1)
+            throw new IllegalArgumentException("Not a configuration of this game:" + System.lineSeparator()
+                    + aPosition);
+        return index;
+    }
+
+    /**
+     * Unpacks a configuration packed by encode
+     *
+     * @param code A configuration index
+     * @return The configuration
+     */
+    @Override
+    public Node decode(long code)
+    {
+        if(codeBits() == 0)
+            throw new UnsupportedOperationException("Board too large to decode");
 
-        return gameOver;
+        Node n = codeBits() < 64 && code >>> codeBits() != 0 ? null : position(code);
+        if(n == null)
+            throw new IllegalArgumentException("Not a code of this game: " + code);
+        return n;
+    }
+
+    /**
+     * Returns the configurations with the last mover's top piece taken out of one column
+     *
+     * @param n A particular configuration
+     * @return The configurations one move before n
+     */
+    @Override
+    public Iterable<Node> predecessors(Node n)
+    {
+        Position aPosition = (Position)n.getData();
+        char lastMover = aPosition.getToMove() == ONE ? TWO : ONE;
+        ArrayList<Node> predecessors = new ArrayList<Node>();
+
+        for(int i = 0; i < aPosition.getWidth(); i++)
+        {
+            int top = aPosition.open[i];
+            if(top < aPosition.getHeight() && aPosition.board[i][top] == lastMover)
+            {
+                char[][] board = aPosition.board.clone();
+                board[i] = board[i].clone();
+                board[i][top] = EMPTY;
+                predecessors.add(new Node<Position>(new Position(board, xFirst)));
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * Plays uniformly random moves to the end of the game on a pair of bitboards built once from the board, checking
+     * only the lines through each new piece. Each column takes height + 1 bits from the bottom up, the extra bit always
+     * empty so lines cannot run from the top of one column into the bottom of the next.
+     *
+     * @param n A configuration that is not a goal
+     * @param random Source of random moves
+     * @return 1 if the player to move in n wins, -1 if they lose, 0 if tie
+     */
+    @Override
+    public int playout(Node n, Random random)
+    {
+        Position aPosition = (Position)n.getData();
+        int width = aPosition.getWidth();
+        int height = aPosition.getHeight();
+        int size = width * (height + 1);
+        long[] x = new long[(size + 63) >>> 6];
+        long[] o = new long[x.length];
+        int[] filled = new int[width];
+        int[] open = new int[width]; //Columns that still have space
+        int openCount = 0;
+
+        for(int col = 0; col < width; col++)
+        {
+            for(int row = height - 1; row >= aPosition.open[col]; row--)
+            {
+                int bit = col * (height + 1) + filled[col]++;
+                long[] bits = aPosition.board[col][row] == ONE ? x : o;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+            if(filled[col] < height)
+                open[openCount++] = col;
+        }
+
+        int[] shifts = {1, height + 1, height + 2, height};
+        boolean xTurn = aPosition.getToMove() == ONE;
+        boolean xStarted = xTurn;
+        while(openCount > 0)
+        {
+            int index = random.nextInt(openCount);
+            int col = open[index];
+            int bit = col * (height + 1) + filled[col];
+            long[] bits = xTurn ? x : o;
+
+            bits[bit >>> 6] |= 1L << bit;
+            if(++filled[col] == height)
+                open[index] = open[--openCount];
+
+            if(hasLineThrough(bits, bit, size, shifts))
+                return xTurn == xStarted ? 1 : -1;
+
+            xTurn = !xTurn;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Checks for three in a row that includes one space of a playout bitboard
+     *
+     * @param bits The player's pieces
+     * @param bit The space
+     * @param size Number of bits on the board
+     * @param shifts Bit distance between neighboring spaces in each direction
+     * @return True if the space is part of three of the player's pieces in a row
+     */
+    private static boolean hasLineThrough(long[] bits, int bit, int size, int[] shifts)
+    {
+        for(int shift : shifts)
+        {
+            int count = 1;
+            for(int b = bit - shift; count < 3 && b >= 0 && (bits[b >>> 6] & (1L << b)) != 0; b -= shift)
+                count++;
+            for(int b = bit + shift; count < 3 && b < size && (bits[b >>> 6] & (1L << b)) != 0; b += shift)
+                count++;
+
+            if(count >= 3)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Updates the game after a move has been made
+     *
+     * @param n The new configuration after a move has been made
+     */
+    @Override
+    public void update(Node n)
+    {
+        position = (Position)n.getData();
+    }
+
+    /**
+     * Checks if the current game is over
+     *
+     * @return True if the game is over, false otherwise
+     */
+    @Override
+    public boolean gameOver() {
+        //If there are no empty spaces, or no line can be made with the ones left, the game is a tie
+        Node current = new Node<Position>(position);
+        return position.getEmpty() == 0 || isGoal(current) || isDraw(current);
     }
 
     /**
@@ -577,12 +888,47 @@ public class Connect3 implements Game
      */
     @Override
     public Node getCurrentPosition() {
-        char[][] aBoard = new char[board.length][board[0].length];
+        //Positions are immutable, so they can be handed out without copying
+        return new Node<Position>(position);
+    }
 
-        for(int i = 0; i < board.length; i++)
-            System.arraycopy(board[i], 0, aBoard[i], 0, aBoard[0].length);
+    /**
+     * Estimates how good a configuration is for the player to move from the lines of three each player could still
+     * complete, with a line two pieces along, one move from a win, counting much more than a line with one piece, and
+     * from how near the middle columns each player's pieces are. Positions keep the count of every line up to date
+     * from the position they were made from, so this only updates the few lines through the last piece dropped.
+     *
+     * @param n A particular configuration
+     * @return The estimate, positive if the player to move is ahead
+     */
+    @Override
+    public int evaluate(Node n)
+    {
+        Position aPosition = (Position)n.getData();
+        int value = (int)aPosition.lineCounts()[aPosition.lines.words];
+        return aPosition.toMove == ONE ? value : -value;
+    }
 
-        return new Node<char[][]>(aBoard);
+    /**
+     * Works out the value for X of every line count, see Position.lineCounts
+     *
+     * @return The values, indexed by O count << 2 | X count
+     */
+    private static int[] lineValues()
+    {
+        int[] values = new int[16];
+        for(int x = 0; x < 4; x++)
+        {
+            for(int o = 0; o < 4; o++)
+            {
+                //A line holding both players' pieces can never be completed
+                if(o == 0)
+                    values[o << 2 | x] = LINE_WEIGHTS[x];
+                else if(x == 0)
+                    values[o << 2 | x] = -LINE_WEIGHTS[o];
+            }
+        }
+        return values;
     }
 
     /**
@@ -596,4 +942,376 @@ public class Connect3 implements Game
         //The player who ends the game is the winner
         n.setScore(-score);
     }
+
+
+    /**
+     * An immutable Connect3 position. Besides the board it carries whose turn it is and how many pieces each player
+     * has placed, so neither has to be recounted from the board. Columns that a move does not touch are shared with
+     * the position it was made from, which is safe because they are never written after construction. That position
+     * is also kept, so the line counts behind evaluate can be brought up to date from its counts.
+     */
+    public static final class Position
+    {
+        private final char[][] board; //board[column][row], row 0 is the top
+        private final int[] open; //Number of empty spaces left in each column
+        private final char toMove; //The piece placed by the next move
+        private final int xCount; //Number of X pieces on the board
+        private final int oCount; //Number of O pieces on the board
+        private final int lastColumn; //Column of the move that led here, -1 for a starting position
+        private final Lines lines; //The lines of three on boards this size
+        private final Position from; //The position the last move was made from, null for a starting position
+        private volatile long[] lineCounts; //Pieces in each line, 4 bits per line holding O count << 2 | X count,
+                                            //then the heuristic value for X, null until evaluate asks for it
+        private int hash; //Cached hash code, 0 until computed
+        private long longHash; //Cached 64 bit hash, 0 until computed
+
+        /**
+         * @param board The board, which is copied
+         * @param xFirst True if X moves when both players have the same number of pieces
+         * @throws IllegalArgumentException If a piece is above an empty space or one player has placed more than one
+         * piece more than the other, since no game reaches such a board
+         */
+        public Position(char[][] board, boolean xFirst)
+        {
+            int x = 0;
+            int o = 0;
+
+            this.board = new char[board.length][];
+            this.open = new int[board.length];
+            for(int i = 0; i < board.length; i++)
+            {
+                this.board[i] = board[i].clone();
+                for(int j = 0; j < board[i].length; j++)
+                {
+                    if(board[i][j] == ONE)
+                        x++;
+                    else if(board[i][j] == TWO)
+                        o++;
+                    else if(open[i] < j)
+                        throw new IllegalArgumentException("Piece above an empty space in column " + i);
+                    else
+                        open[i] = j + 1;
+                }
+            }
+            if(Math.abs(x - o) > 1)
+                throw new IllegalArgumentException("One player has " + Math.abs(x - o) + " more pieces than the other");
+
+            this.xCount = x;
+            this.oCount = o;
+            if(x > o)
+                this.toMove = TWO;
+            else if(o > x)
+                this.toMove = ONE;
+            else
+                this.toMove = xFirst ? ONE : TWO;
+            this.lastColumn = -1;
+            this.lines = Lines.of(board.length, board[0].length);
+            this.from = null;
+        }
+
+        /**
+         * Creates the position after a move, sharing every column except the one played in
+         */
+        private Position(Position from, int col)
+        {
+            int row = from.open[col] - 1;
+
+            board = from.board.clone();
+            board[col] = from.board[col].clone();
+            board[col][row] = from.toMove;
+
+            open = from.open.clone();
+            open[col] = row;
+
+            toMove = from.toMove == ONE ? TWO : ONE;
+            xCount = from.xCount + (from.toMove == ONE ? 1 : 0);
+            oCount = from.oCount + (from.toMove == TWO ? 1 : 0);
+            lastColumn = col;
+
+            lines = from.lines;
+            this.from = from;
+        }
+
+        /**
+         * Gets the line counts and heuristic value, working them out from those of the position the last move was made
+         * from the first time they are asked for. Only the lines through the new piece change, so this is a copy of a
+         * few longs and an update of at most twelve lines, and making moves costs nothing extra when no search asks.
+         * Only a starting position counts every line on the board.
+         *
+         * @return The counts, see lineCounts
+         */
+        private long[] lineCounts()
+        {
+            long[] counts = lineCounts;
+            if(counts == null && from == null)
+            {
+                int[] lineCount = new int[lines.count];
+                int value = 0;
+                for(int i = 0; i < board.length; i++)
+                {
+                    for(int j = open[i]; j < board[i].length; j++)
+                    {
+                        value += board[i][j] == ONE ? lines.center[i] : -lines.center[i];
+                        for(int line : lines.through[i * board[i].length + j])
+                            lineCount[line] += board[i][j] == ONE ? 1 : 4;
+                    }
+                }
+
+                counts = new long[lines.words + 1];
+                for(int line = 0; line < lineCount.length; line++)
+                {
+                    counts[line >>> 4] |= (long)lineCount[line] << (line << 2);
+                    value += LINE_VALUES[lineCount[line]];
+                }
+                counts[lines.words] = value;
+                lineCounts = counts;
+            }
+            else if(counts == null)
+            {
+                counts = from.lineCounts().clone();
+                int row = open[lastColumn];
+                long piece = from.toMove == ONE ? 1 : 4;
+                long value = counts[lines.words] + (from.toMove == ONE ? lines.center[lastColumn]
+                        : -lines.center[lastColumn]);
+                for(int line : lines.through[lastColumn * board[lastColumn].length + row])
+                {
+                    int shift = line << 2; //Shifts of a long only use the low 6 bits, picking the line in its word
+                    int before = (int)(counts[line >>> 4] >>> shift) & 15;
+                    counts[line >>> 4] += piece << shift;
+                    value += LINE_VALUES[before + (int)piece] - LINE_VALUES[before];
+                }
+                counts[lines.words] = value;
+                lineCounts = counts;
+            }
+            return counts;
+        }
+
+        /**
+         * Drops the next player's piece into a column
+         *
+         * @param col The column, which must be open
+         * @return The resulting position
+         */
+        public Position play(int col)
+        {
+            return new Position(this, col);
+        }
+
+        /**
+         * Checks whether a piece can be dropped into a column
+         *
+         * @param col The column
+         * @return True if the column exists and has an empty space
+         */
+        public boolean isOpen(int col)
+        {
+            return col >= 0 && col < open.length && open[col] > 0;
+        }
+
+        /**
+         * Getter for the piece at a space
+         *
+         * @param col The column
+         * @param row The row, 0 is the top
+         * @return X, O or .
+         */
+        public char get(int col, int row)
+        {
+            return board[col][row];
+        }
+
+        /**
+         * @return Number of columns
+         */
+        public int getWidth()
+        {
+            return board.length;
+        }
+
+        /**
+         * @return Number of rows
+         */
+        public int getHeight()
+        {
+            return board[0].length;
+        }
+
+        /**
+         * @return The piece placed by the next move
+         */
+        public char getToMove()
+        {
+            return toMove;
+        }
+
+        /**
+         * @return Number of X pieces on the board
+         */
+        public int getXCount()
+        {
+            return xCount;
+        }
+
+        /**
+         * @return Number of O pieces on the board
+         */
+        public int getOCount()
+        {
+            return oCount;
+        }
+
+        /**
+         * @return Number of empty spaces on the board
+         */
+        public int getEmpty()
+        {
+            return board.length * board[0].length - xCount - oCount;
+        }
+
+        /**
+         * @return Column of the move that led to this position, -1 for a starting position
+         */
+        public int getLastColumn()
+        {
+            return lastColumn;
+        }
+
+        /**
+         *
+         * @return hashcode for this object
+         */
+        public int hashCode()
+        {
+            int h = hash;
+            if(h == 0)
+            {
+                h = 31 * Arrays.deepHashCode(board) + toMove;
+                hash = h;
+            }
+            return h;
+        }
+
+        /**
+         * Gets a 64 bit hash of the board and the player to move
+         *
+         * @return The hash
+         */
+        public long longHash()
+        {
+            long h = longHash;
+            if(h == 0)
+            {
+                h = toMove;
+                for(char[] column : board)
+                {
+                    for(char c : column)
+                        h = h * 0x9e3779b97f4a7c15L + c;
+                }
+                h = TranspositionTable.mix(h);
+                longHash = h;
+            }
+            return h;
+        }
+
+        /**
+         * Two positions are equal if they have the same board and the same player to move
+         *
+         * @param o The other object
+         * @return True if o is an equal position
+         */
+        public boolean equals(Object o)
+        {
+            if(this == o)
+                return true;
+            if(!(o instanceof Position))
+                return false;
+
+            Position other = (Position)o;
+            return toMove == other.toMove && xCount == other.xCount && oCount == other.oCount
+                    && Arrays.deepEquals(board, other.board);
+        }
+
+        /**
+         *
+         * @return A string representation of the object
+         */
+        public String toString()
+        {
+            StringBuilder answer = new StringBuilder();
+
+            for(int j = 0; j < board[0].length; j++)
+            {
+                for(int i = 0; i < board.length; i++)
+                {
+                    answer.append(board[i][j]).append(' ');
+                }
+                answer.append(System.lineSeparator());
+            }
+
+            return answer.toString();
+        }
+    }
+
+
+    /**
+     * The lines of three spaces on boards of one size, found once per size and shared by every position
+     */
+    private static final class Lines
+    {
+        private static final ConcurrentHashMap<Integer, Lines> SIZES = new ConcurrentHashMap<Integer, Lines>();
+                                                             //Lines of each board size, by width << 16 | height
+
+        private final int count; //Number of lines
+        private final int words; //Longs that hold a 4 bit count for every line
+        private final int[][] through; //Lines through each space, indexed by column * height + row
+        private final int[] center; //Bonus for a piece in each column, higher nearer the middle
+
+        /**
+         * Gets the lines for a board size
+         *
+         * @param width Number of columns
+         * @param height Number of rows
+         * @return The lines
+         */
+        static Lines of(int width, int height)
+        {
+            return SIZES.computeIfAbsent(width << 16 | height, size -> new Lines(width, height));
+        }
+
+        private Lines(int width, int height)
+        {
+            List<List<Integer>> lists = new ArrayList<List<Integer>>();
+            for(int i = 0; i < width * height; i++)
+                lists.add(new ArrayList<Integer>());
+
+            int lineCount = 0;
+            for(int[] d : DIRECTIONS)
+            {
+                for(int col = 0; col < width; col++)
+                {
+                    for(int row = 0; row < height; row++)
+                    {
+                        int endCol = col + 2 * d[0];
+                        int endRow = row + 2 * d[1];
+                        if(endCol < 0 || endCol >= width || endRow < 0 || endRow >= height)
+                            continue;
+
+                        for(int k = 0; k < 3; k++)
+                            lists.get((col + k * d[0]) * height + row + k * d[1]).add(lineCount);
+                        lineCount++;
+                    }
+                }
+            }
+
+            count = lineCount;
+            words = (lineCount + 15) / 16;
+            through = new int[width * height][];
+            for(int i = 0; i < through.length; i++)
+                through[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+
+            center = new int[width];
+            for(int col = 0; col < width; col++)
+                center[col] = Math.min(col, width - 1 - col);
+        }
+    }
 }
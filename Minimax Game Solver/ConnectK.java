@@ -0,0 +1,681 @@
+import java.util.*;
+
+/**
+ * Simulates connect K on a board of any size, for example connect four on a 7 by 6 board. Players alternate dropping
+ * a piece into a column and the first to get K in a row wins.
+ *
+ * Each player's pieces are kept in a bitset spread over as many longs as the board needs. Bit col * (height + 1) + row
+ * is the space in column col and row row, counting rows from the bottom, and the extra bit at the top of every column
+ * is always empty so that runs cannot wrap from one column into the next. A K in a row in direction s is then found by
+ * ANDing the bitset with itself shifted by s, 2s, ... (K-1)s, 64 spaces at a time.
+ *
+ * @author Jeff DeSain
+ */
+public class ConnectK implements Game, Playout
+{
+    private static final String USAGE = "Usage: java ConnectK [play] width height k [think_ms]"; //Usage statement
+    private static final char ONE = 'X'; //Character used for player
+    private static final char TWO = 'O'; //Charcter used for AI
+    private static final char EMPTY = '.'; //Character used for open space
+
+    private final int width; //Number of columns
+    private final int height; //Number of rows
+    private final int k; //Number in a row needed to win
+    private final int[] shifts; //Bit distance between neighboring spaces in each direction
+    private final int[] order; //Columns from the center outwards, the order moves are tried in
+
+    private Position position; //The current position
+
+
+    /**
+     * Starts a game on an empty board
+     *
+     * @param width Number of columns
+     * @param height Number of rows
+     * @param k Number in a row needed to win
+     * @param xFirst True if X moves first
+     */
+    public ConnectK(int width, int height, int k, boolean xFirst)
+    {
+        if(width < 1 || height < 1 || k < 1)
+            throw new IllegalArgumentException("Board size and k must be positive");
+
+        this.width = width;
+        this.height = height;
+        this.k = k;
+        //vertical, horizontal, diagonal and other diagonal
+        this.shifts = new int[]{1, height + 1, height + 2, height};
+
+        this.order = new int[width];
+        for(int i = 0; i < width; i++)
+            order[i] = width / 2 + (i % 2 == 0 ? i / 2 : -(i + 1) / 2);
+
+        this.position = new Position(width, height, xFirst ? ONE : TWO);
+    }
+
+
+    public static void main(String[] args)
+    {
+        Scanner in = new Scanner(System.in);
+        ConnectK currentGame = null;
+        Solver solver = null;
+        MonteCarloSolver monteCarlo = null;
+        boolean play = false;
+        int first = 0;
+        long thinkTime = 0;
+
+        //Ensure valid command line arguments
+        if(args.length > 0 && args[0].equals("play"))
+        {
+            play = true;
+            first = 1;
+        }
+        if(args.length - first != 3 && args.length - first != 4)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        try
+        {
+            currentGame = new ConnectK(Integer.parseInt(args[first]), Integer.parseInt(args[first + 1]),
+                    Integer.parseInt(args[first + 2]), play);
+            if(args.length - first == 4)
+            {
+                thinkTime = Long.parseLong(args[first + 3]);
+                if(thinkTime < 1)
+                    throw new IllegalArgumentException();
+            }
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        //With a think time the AI plays the best move Monte Carlo tree search finds in that time, otherwise it solves
+        if(thinkTime > 0)
+            monteCarlo = new MonteCarloSolver(currentGame, Runtime.getRuntime().availableProcessors(), thinkTime, 0);
+        else
+            solver = new Solver(currentGame);
+        boolean valid;
+        int playerMove = 0;
+
+        while(!currentGame.gameOver())
+        {
+            System.out.println(currentGame);
+            //Gets the player's move, confirms it is valid, and then makes the move
+            if(play)
+            {
+                valid = false;
+                while(!valid)
+                {
+                    System.out.print("Your move: ");
+                    try
+                    {
+                        playerMove = Integer.parseInt(in.nextLine());
+
+                        if(currentGame.isValid(playerMove))
+                            valid = true;
+                        else
+                            System.out.println("Must choose a valid column");
+                    }
+                    catch(NoSuchElementException e)
+                    {
+                        System.exit(0);
+                    }
+                    catch(Exception e)
+                    {
+                        System.out.println("Must choose a valid column");
+                    }
+                }
+
+                Position currentPosition = (Position)currentGame.getCurrentPosition().getData();
+                currentGame.update(new Node<Position>(currentPosition.play(playerMove)));
+            }
+            //Gets the AI move and then makes it
+            else
+            {
+                Node move = monteCarlo != null ? monteCarlo.getMove() : solver.getMove();
+                Position cpuMove = (Position)move.getData();
+                System.out.println("CPU plays in column " + cpuMove.getLastColumn());
+                currentGame.update(new Node<Position>(cpuMove));
+            }
+
+            play = !play;
+        }
+
+        System.out.println(currentGame);
+        if(currentGame.isGoal(currentGame.getCurrentPosition()))
+        {
+            if(!play)
+                System.out.println("You win");
+            else
+                System.out.println("You lose");
+        }
+        else
+            System.out.println("Tie game");
+    }
+
+    /**
+     * @return Number of columns
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return Number of rows
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return Number in a row needed to win
+     */
+    public int getK()
+    {
+        return k;
+    }
+
+    /**
+     * Determines if a player move is valid
+     *
+     * @param col Column chosen by player
+     * @return True if the move is valid
+     */
+    public boolean isValid(int col)
+    {
+        return position.isOpen(col);
+    }
+
+    /**
+     *
+     * @return A string representation of the object
+     */
+    public String toString()
+    {
+        return position.toString();
+    }
+
+    /**
+     * Returns a list of all possible configurations given a particular configuration. Center columns come first
+     * since they take part in the most lines.
+     *
+     * @param n A particular configuration
+     * @return An ArrayList containing all possible configurations resulting from a given configuration
+     */
+    @Override
+    public ArrayList<Node> getNeighbors(Node n)
+    {
+        Position aPosition = (Position)n.getData();
+        ArrayList<Node> neighbors = new ArrayList<Node>(width);
+
+        for(int col : order)
+        {
+            if(aPosition.isOpen(col))
+                neighbors.add(new Node<Position>(aPosition.play(col)));
+        }
+
+        return neighbors;
+    }
+
+    /**
+     * Determines whether a particular configuration is a goal configuration
+     *
+     * @param n A particular configuration
+     * @return True if either player has K in a row
+     */
+    @Override
+    public boolean isGoal(Node n)
+    {
+        Position aPosition = (Position)n.getData();
+
+        //Only the player who just moved can have completed a line, unless this is a starting position
+        if(aPosition.getLastColumn() >= 0)
+            return hasLine(aPosition.getLastMoved() == ONE ? aPosition.x : aPosition.o);
+
+        return hasLine(aPosition.x) || hasLine(aPosition.o);
+    }
+
+    /**
+     * Checks a player's bitset for K in a row in any direction
+     *
+     * @param bits The player's pieces
+     * @return True if there are K pieces in a row
+     */
+    boolean hasLine(long[] bits)
+    {
+        //With no pieces there is no line, even when K is 1 and the loop below would not look at the bits
+        boolean pieces = false;
+        for(long word : bits)
+            pieces |= word != 0;
+        if(!pieces)
+            return false;
+
+        long[] run = new long[bits.length];
+
+        for(int shift : shifts)
+        {
+            System.arraycopy(bits, 0, run, 0, bits.length);
+            boolean any = true;
+
+            //After step t, a bit is left set only where t+1 pieces in a row start
+            for(int t = 1; t < k && any; t++)
+            {
+                any = false;
+                for(int w = 0; w < run.length; w++)
+                {
+                    run[w] &= shiftedWord(bits, w, t * shift);
+                    any |= run[w] != 0;
+                }
+            }
+
+            if(any)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds one word of a bitset shifted towards bit 0
+     *
+     * @param bits The bitset
+     * @param w Index of the word
+     * @param shift Number of bits to shift by
+     * @return Word w of bits shifted right by shift
+     */
+    private static long shiftedWord(long[] bits, int w, int shift)
+    {
+        int from = w + (shift >>> 6);
+        int offset = shift & 63;
+
+        if(from >= bits.length)
+            return 0;
+        if(offset == 0)
+            return bits[from];
+
+        long word = bits[from] >>> offset;
+        if(from + 1 < bits.length)
+            word |= bits[from + 1] << (64 - offset);
+        return word;
+    }
+
+    /**
+     * Plays uniformly random moves to the end of the game on private copies of the bitsets, checking only the lines
+     * through each new piece
+     *
+     * @param n A configuration that is not a goal
+     * @param random Source of random moves
+     * @return 1 if the player to move in n wins, -1 if they lose, 0 if tie
+     */
+    @Override
+    public int playout(Node n, Random random)
+    {
+        Position aPosition = (Position)n.getData();
+        long[] x = aPosition.x.clone();
+        long[] o = aPosition.o.clone();
+        int[] filled = aPosition.filled.clone();
+        int[] open = new int[width]; //Columns that still have space
+        int openCount = 0;
+        boolean xTurn = aPosition.getToMove() == ONE;
+        boolean xStarted = xTurn;
+
+        for(int col = 0; col < width; col++)
+        {
+            if(filled[col] < height)
+                open[openCount++] = col;
+        }
+
+        while(openCount > 0)
+        {
+            int index = random.nextInt(openCount);
+            int col = open[index];
+            int bit = col * (height + 1) + filled[col];
+            long[] bits = xTurn ? x : o;
+
+            bits[bit >>> 6] |= 1L << bit;
+            if(++filled[col] == height)
+                open[index] = open[--openCount];
+
+            if(hasLineThrough(bits, bit))
+                return xTurn == xStarted ? 1 : -1;
+
+            xTurn = !xTurn;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Checks for K in a row that includes one space
+     *
+     * @param bits The player's pieces
+     * @param bit The space
+     * @return True if the space is part of K of the player's pieces in a row
+     */
+    private boolean hasLineThrough(long[] bits, int bit)
+    {
+        int size = width * (height + 1);
+
+        for(int shift : shifts)
+        {
+            int count = 1;
+            for(int b = bit - shift; b >= 0 && (bits[b >>> 6] & (1L << b)) != 0; b -= shift)
+                count++;
+            for(int b = bit + shift; b < size && (bits[b >>> 6] & (1L << b)) != 0; b += shift)
+                count++;
+
+            if(count >= k)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets a 64 bit key identifying a configuration
+     *
+     * @param n A particular configuration
+     * @return The configuration's key
+     */
+    @Override
+    public long hashKey(Node n)
+    {
+        return ((Position)n.getData()).longHash();
+    }
+
+    /**
+     * Estimates how hard a configuration is to solve
+     *
+     * @param n A particular configuration
+     * @return The number of empty spaces
+     */
+    @Override
+    public int movesLeft(Node n)
+    {
+        return ((Position)n.getData()).getEmpty();
+    }
+
+    /**
+     * Updates the game after a move has been made
+     *
+     * @param n The new configuration after a move has been made
+     */
+    @Override
+    public void update(Node n)
+    {
+        position = (Position)n.getData();
+    }
+
+    /**
+     * Checks if the current game is over
+     *
+     * @return True if the game is over, false otherwise
+     */
+    @Override
+    public boolean gameOver()
+    {
+        return position.getEmpty() == 0 || isGoal(new Node<Position>(position));
+    }
+
+    /**
+     * Getter for the current position
+     *
+     * @return A node containing the current position
+     */
+    @Override
+    public Node getCurrentPosition()
+    {
+        return new Node<Position>(position);
+    }
+
+    /**
+     *
+     * @param n The node
+     * @param score 1 if maximizing player, -1 if minimizing player, 0 if tie
+     */
+    @Override
+    public void setScore(Node n, int score)
+    {
+        //The player who ends the game is the winner
+        n.setScore(-score);
+    }
+
+
+    /**
+     * An immutable connect K position: one bitset per player, the number of pieces in each column and whose turn
+     * it is. A move copies only the mover's bitset and shares the other one.
+     */
+    public static final class Position
+    {
+        private final int height; //Number of rows
+        private final long[] x; //Spaces holding X pieces
+        private final long[] o; //Spaces holding O pieces
+        private final int[] filled; //Number of pieces in each column
+        private final char toMove; //The piece placed by the next move
+        private final int moves; //Number of pieces on the board
+        private final int lastColumn; //Column of the move that led here, -1 for a starting position
+        private int hash; //Cached hash code, 0 until computed
+        private long longHash; //Cached 64 bit hash, 0 until computed
+
+        /**
+         * Creates an empty board
+         *
+         * @param width Number of columns
+         * @param height Number of rows
+         * @param toMove The piece placed by the first move
+         */
+        Position(int width, int height, char toMove)
+        {
+            int words = (width * (height + 1) + 63) >>> 6;
+
+            this.height = height;
+            this.x = new long[words];
+            this.o = new long[words];
+            this.filled = new int[width];
+            this.toMove = toMove;
+            this.moves = 0;
+            this.lastColumn = -1;
+        }
+
+        /**
+         * Creates the position after a move
+         */
+        private Position(Position from, int col)
+        {
+            int bit = col * (from.height + 1) + from.filled[col];
+
+            height = from.height;
+            if(from.toMove == ONE)
+            {
+                x = from.x.clone();
+                x[bit >>> 6] |= 1L << bit;
+                o = from.o;
+            }
+            else
+            {
+                o = from.o.clone();
+                o[bit >>> 6] |= 1L << bit;
+                x = from.x;
+            }
+
+            filled = from.filled.clone();
+            filled[col]++;
+            toMove = from.toMove == ONE ? TWO : ONE;
+            moves = from.moves + 1;
+            lastColumn = col;
+        }
+
+        /**
+         * Drops the next player's piece into a column
+         *
+         * @param col The column, which must be open
+         * @return The resulting position
+         */
+        public Position play(int col)
+        {
+            return new Position(this, col);
+        }
+
+        /**
+         * Checks whether a piece can be dropped into a column
+         *
+         * @param col The column
+         * @return True if the column exists and has an empty space
+         */
+        public boolean isOpen(int col)
+        {
+            return col >= 0 && col < filled.length && filled[col] < height;
+        }
+
+        /**
+         * Getter for the piece at a space
+         *
+         * @param col The column
+         * @param row The row, 0 is the bottom
+         * @return X, O or .
+         */
+        public char get(int col, int row)
+        {
+            int bit = col * (height + 1) + row;
+
+            if((x[bit >>> 6] & (1L << bit)) != 0)
+                return ONE;
+            if((o[bit >>> 6] & (1L << bit)) != 0)
+                return TWO;
+            return EMPTY;
+        }
+
+        /**
+         * @return Number of columns
+         */
+        public int getWidth()
+        {
+            return filled.length;
+        }
+
+        /**
+         * @return Number of rows
+         */
+        public int getHeight()
+        {
+            return height;
+        }
+
+        /**
+         * @return The piece placed by the next move
+         */
+        public char getToMove()
+        {
+            return toMove;
+        }
+
+        /**
+         * @return The piece placed by the move that led here
+         */
+        public char getLastMoved()
+        {
+            return toMove == ONE ? TWO : ONE;
+        }
+
+        /**
+         * @return Number of pieces on the board
+         */
+        public int getMoves()
+        {
+            return moves;
+        }
+
+        /**
+         * @return Number of empty spaces on the board
+         */
+        public int getEmpty()
+        {
+            return filled.length * height - moves;
+        }
+
+        /**
+         * @return Column of the move that led to this position, -1 for a starting position
+         */
+        public int getLastColumn()
+        {
+            return lastColumn;
+        }
+
+        /**
+         *
+         * @return hashcode for this object
+         */
+        public int hashCode()
+        {
+            int h = hash;
+            if(h == 0)
+            {
+                h = 31 * (31 * Arrays.hashCode(x) + Arrays.hashCode(o)) + toMove;
+                hash = h;
+            }
+            return h;
+        }
+
+        /**
+         * Gets a 64 bit hash of the pieces and the player to move
+         *
+         * @return The hash
+         */
+        public long longHash()
+        {
+            long h = longHash;
+            if(h == 0)
+            {
+                h = toMove;
+                for(int w = 0; w < x.length; w++)
+                    h = TranspositionTable.mix(h + x[w]) + TranspositionTable.mix(o[w] ^ 0x9e3779b97f4a7c15L);
+                h = TranspositionTable.mix(h);
+                longHash = h;
+            }
+            return h;
+        }
+
+        /**
+         * Two positions are equal if they have the same pieces and the same player to move
+         *
+         * @param other The other object
+         * @return True if other is an equal position
+         */
+        public boolean equals(Object other)
+        {
+            if(this == other)
+                return true;
+            if(!(other instanceof Position))
+                return false;
+
+            Position p = (Position)other;
+            return toMove == p.toMove && height == p.height && Arrays.equals(x, p.x) && Arrays.equals(o, p.o);
+        }
+
+        /**
+         *
+         * @return A string representation of the object
+         */
+        public String toString()
+        {
+            StringBuilder answer = new StringBuilder();
+
+            for(int row = height - 1; row >= 0; row--)
+            {
+                for(int col = 0; col < filled.length; col++)
+                {
+                    answer.append(get(col, row)).append(' ');
+                }
+                answer.append(System.lineSeparator());
+            }
+
+            return answer.toString();
+        }
+    }
+}
@@ -0,0 +1,512 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * Solves a Connect3 or ConnectK position by splitting it at the root and sending each move's subtree to a
+ * SolveWorker process, so the solve can use more memory and cores than one JVM holds. Every worker has its own
+ * Solver and cache and takes the next subtree as soon as it finishes one.
+ *
+ * Results are merged with bound propagation: each subtree is sent with a window that only asks whether it beats the
+ * best move found so far, so once a tie is known the remaining subtrees get null window searches, and once a win is
+ * known the searches still running are cancelled. A subtree whose worker dies is sent to another worker, and if
+ * every worker dies the rest are solved in this process.
+ *
+ * @author Jeff DeSain
+ */
+public class DistributedSolver
+{
+    private static final String USAGE = "Usage: java DistributedSolver (-spawn n | -workers host:port,host:port)"
+            + " [-table table] [-moves col,col,col] connect3 width height | connectk width height k"; //Usage statement
+    private static final int CONNECT_TIMEOUT = 5000; //Milliseconds to wait for a worker to accept a connection
+
+    private final String[] gameArgs; //The game, written as for Games.parse
+    private final Game game; //The game's rules
+    private final List<InetSocketAddress> workers; //Where the workers listen
+
+    //State of the solve in progress, guarded by this
+    private final ArrayDeque<Integer> queue = new ArrayDeque<Integer>(); //Root moves not yet sent to a worker
+    private final List<Socket> sockets = new ArrayList<Socket>(); //Open connections, closed when the solve is over
+    private List<Node> children; //The root's moves
+    private int inFlight; //Root moves being searched by a worker
+    private int alive; //Workers that have not died
+    private boolean done; //True once the root's score is known
+    private String error; //Message from a worker that rejected a request, null if none
+    private int bestValue; //Score of the best move so far for the player to move at the root, -2 if none
+    private int bestIndex; //Index in children of the best move so far
+    private long nodes; //Configurations searched by all workers
+    private int reassigned; //Root moves sent again after their worker died
+    private long[] tasks; //Root moves solved by each worker, the last entry counts those solved in this process
+
+
+    /**
+     * @param gameArgs The game, written as for Games.parse
+     * @param workers Where the workers listen
+     */
+    public DistributedSolver(String[] gameArgs, List<InetSocketAddress> workers)
+    {
+        this.gameArgs = gameArgs.clone();
+        this.game = Games.parse(gameArgs, 0);
+        this.workers = new ArrayList<InetSocketAddress>(workers);
+        replay(game, new int[0]);
+    }
+
+    public static void main(String[] args)
+    {
+        int spawn = 0;
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        String table = "64";
+        int[] moves = new int[0];
+        int first = 0;
+        DistributedSolver solver = null;
+
+        try
+        {
+            while(first + 1 < args.length && args[first].startsWith("-"))
+            {
+                if(args[first].equals("-spawn"))
+                    spawn = Integer.parseInt(args[first + 1]);
+                else if(args[first].equals("-workers"))
+                {
+                    for(String worker : args[first + 1].split(","))
+                    {
+                        int colon = worker.lastIndexOf(':');
+                        addresses.add(new InetSocketAddress(worker.substring(0, colon),
+                                Integer.parseInt(worker.substring(colon + 1))));
+                    }
+                }
+                else if(args[first].equals("-table"))
+                    table = args[first + 1];
+                else if(args[first].equals("-moves"))
+                    moves = parseMoves(args[first + 1]);
+                else
+                    throw new IllegalArgumentException();
+                first += 2;
+            }
+            if(spawn < 0 || spawn == 0 && addresses.isEmpty())
+                throw new IllegalArgumentException();
+            TranspositionTable.create(table);
+            solver = new DistributedSolver(Arrays.copyOfRange(args, first, args.length), addresses);
+        }
+        catch(IllegalArgumentException | StringIndexOutOfBoundsException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        List<Process> processes = new ArrayList<Process>();
+        try
+        {
+            for(int i = 0; i < spawn; i++)
+            {
+                Process process = spawn(table);
+                processes.add(process);
+                solver.workers.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port(process)));
+            }
+
+            Node root = replay(solver.game, moves);
+            System.out.println(root.getData());
+
+            long start = System.nanoTime();
+            Node move = solver.solve(moves);
+            long elapsed = System.nanoTime() - start;
+
+            if(move != root)
+                System.out.println("Best move: column " + column(move));
+            System.out.println("Score: " + move.getScore());
+            System.out.println("Configurations searched: " + solver.getNodeCount() + "  Reassigned: "
+                    + solver.getReassigned() + "  Elapsed: " + elapsed / 1000000 + " ms");
+            System.out.println("Moves solved by each worker: " + Arrays.toString(solver.tasks));
+        }
+        catch(IllegalArgumentException | IllegalStateException | IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            for(Process process : processes)
+                process.destroy();
+        }
+    }
+
+    /**
+     * Starts a worker process on this machine, listening on any free port
+     *
+     * @param table Description of the worker's cache, see TranspositionTable.create
+     * @return The process
+     * @throws IOException If the process cannot be started
+     */
+    public static Process spawn(String table) throws IOException
+    {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "SolveWorker", "0", table)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    /**
+     * Finds the port a spawned worker listens on, from the first line it prints
+     *
+     * @param process The worker
+     * @return The port
+     * @throws IOException If the worker stops before saying
+     */
+    private static int port(Process process) throws IOException
+    {
+        String line = new BufferedReader(new InputStreamReader(process.getInputStream())).readLine();
+        if(line == null || !line.startsWith("Listening on port "))
+            throw new IOException("Worker did not start");
+        return Integer.parseInt(line.substring("Listening on port ".length()).trim());
+    }
+
+    /**
+     * Solves a position, splitting it between the workers
+     *
+     * @param moves Columns played from the empty board to reach the position
+     * @return A node containing the configuration of the best move, scored for the player to move, or the position
+     * itself if the game is over
+     * @throws IllegalStateException If a worker rejects a request
+     */
+    public Node solve(int[] moves)
+    {
+        Node root = replay(game, moves);
+        if(game.isGoal(root))
+        {
+            game.setScore(root, 1);
+            return root;
+        }
+
+        List<Node> moveList = new ArrayList<Node>();
+        for(Node aNode : game.moves(root))
+            moveList.add(aNode);
+        if(moveList.isEmpty())
+        {
+            root.setScore(0);
+            return root;
+        }
+
+        List<Thread> threads = new ArrayList<Thread>();
+        synchronized(this)
+        {
+            children = moveList;
+            queue.clear();
+            for(int i = 0; i < children.size(); i++)
+                queue.add(i);
+            inFlight = 0;
+            alive = workers.size();
+            done = false;
+            error = null;
+            bestValue = -2;
+            bestIndex = -1;
+            nodes = 0;
+            reassigned = 0;
+            tasks = new long[workers.size() + 1];
+
+            for(int w = 0; w < workers.size(); w++)
+            {
+                int worker = w;
+                Thread thread = new Thread(() -> work(worker, moves), "worker " + workers.get(w));
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+
+            try
+            {
+                while(bestValue < 1 && (!queue.isEmpty() || inFlight > 0) && alive > 0 && error == null)
+                    wait();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Solve interrupted");
+            }
+            finally
+            {
+                //Closing the connections cancels the searches still running
+                done = true;
+                notifyAll();
+                for(Socket socket : sockets)
+                    close(socket);
+                sockets.clear();
+            }
+        }
+
+        for(Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if(error != null)
+            throw new IllegalStateException(error);
+        solveLocally();
+
+        Node best = children.get(bestIndex);
+        best.setScore(bestValue);
+        return best;
+    }
+
+    /**
+     * @return Configurations searched by the workers during the last solve
+     */
+    public synchronized long getNodeCount()
+    {
+        return nodes;
+    }
+
+    /**
+     * @return Root moves sent again during the last solve because their worker died
+     */
+    public synchronized int getReassigned()
+    {
+        return reassigned;
+    }
+
+    /**
+     * Sends root moves to one worker until there are none left or the solve is over
+     *
+     * @param worker Index of the worker in workers
+     * @param moves Columns played from the empty board to reach the root
+     */
+    private void work(int worker, int[] moves)
+    {
+        int task = -1;
+
+        try(Socket socket = new Socket())
+        {
+            socket.connect(workers.get(worker), CONNECT_TIMEOUT);
+            synchronized(this)
+            {
+                if(done)
+                    return;
+                sockets.add(socket);
+            }
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+
+            while(true)
+            {
+                int alpha;
+                synchronized(this)
+                {
+                    //Wait while other workers are busy, in case one of them dies and its move comes back
+                    while(!done && queue.isEmpty())
+                        wait();
+                    if(done)
+                        return;
+                    task = queue.poll();
+                    inFlight++;
+                    alpha = Math.max(bestValue, -1);
+                }
+
+                int[] path = Arrays.copyOf(moves, moves.length + 1);
+                path[moves.length] = column(children.get(task));
+                out.println("SOLVE -1 " + -alpha + " " + formatMoves(path) + " " + String.join(" ", gameArgs));
+
+                String reply = in.readLine();
+                if(reply == null)
+                    throw new IOException("Connection closed");
+
+                String[] words = reply.split("\\s+");
+                synchronized(this)
+                {
+                    if(!words[0].equals("OK"))
+                    {
+                        error = "Worker " + workers.get(worker) + ": " + reply;
+                        inFlight--;
+                        task = -1;
+                        notifyAll();
+                        return;
+                    }
+
+                    record(task, alpha, Integer.parseInt(words[1]));
+                    nodes += Long.parseLong(words[2]);
+                    tasks[worker]++;
+                    inFlight--;
+                    task = -1;
+                    notifyAll();
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            //The worker died or the solve is over
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            synchronized(this)
+            {
+                if(task >= 0)
+                {
+                    inFlight--;
+                    if(!done)
+                    {
+                        queue.addFirst(task);
+                        reassigned++;
+                    }
+                }
+                if(!done)
+                    alive--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Solves the root moves left over when every worker has died
+     */
+    private void solveLocally()
+    {
+        Solver solver = null;
+
+        while(bestValue < 1 && !queue.isEmpty())
+        {
+            if(solver == null)
+            {
+                solver = new Solver(game);
+                solver.setMode(Solver.PVS);
+            }
+
+            int task = queue.poll();
+            int alpha = Math.max(bestValue, -1);
+            long before = solver.getNodeCount();
+            int score = solver.solve(children.get(task), -1, -alpha);
+
+            synchronized(this)
+            {
+                record(task, alpha, score);
+                nodes += solver.getNodeCount() - before;
+                tasks[workers.size()]++;
+            }
+        }
+    }
+
+    /**
+     * Merges the score of one root move. The move was searched with the window -1 to -alpha from its own player's
+     * point of view, so a score at or above -alpha only shows it is no better than alpha. The first move scored is
+     * always kept, since with nothing found yet alpha is -1 and its score is exact even if it loses, so a position
+     * where every move loses still has a move.
+     *
+     * @param task Index of the move in children
+     * @param alpha Best score at the root when the move was sent
+     * @param score The move's score for the player to move after it
+     */
+    private void record(int task, int alpha, int score)
+    {
+        if(bestIndex < 0 || score < -alpha && -score > bestValue)
+        {
+            bestValue = -score;
+            bestIndex = task;
+        }
+    }
+
+    /**
+     * Closes a connection, ignoring errors
+     *
+     * @param socket The connection
+     */
+    private static void close(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch(IOException e)
+        {
+            //Already closed
+        }
+    }
+
+    /**
+     * Reaches a position by dropping pieces into columns from the empty board
+     *
+     * @param game A Connect3 or ConnectK game at its starting position
+     * @param moves The columns, in the order played
+     * @return The position
+     * @throws IllegalArgumentException If the game is not Connect3 or ConnectK, or a move cannot be played
+     */
+    static Node replay(Game game, int[] moves)
+    {
+        Object position = game.getCurrentPosition().getData();
+        if(!(position instanceof Connect3.Position) && !(position instanceof ConnectK.Position))
+            throw new IllegalArgumentException("Only connect3 and connectk can be split");
+
+        for(int col : moves)
+        {
+            if(game.isGoal(new Node<Object>(position)))
+                throw new IllegalArgumentException("Game is over before column " + col);
+
+            if(position instanceof Connect3.Position && ((Connect3.Position)position).isOpen(col))
+                position = ((Connect3.Position)position).play(col);
+            else if(position instanceof ConnectK.Position && ((ConnectK.Position)position).isOpen(col))
+                position = ((ConnectK.Position)position).play(col);
+            else
+                throw new IllegalArgumentException("Cannot play column " + col);
+        }
+        return new Node<Object>(position);
+    }
+
+    /**
+     * Finds the column of the last move
+     *
+     * @param n A Connect3 or ConnectK configuration
+     * @return The column
+     */
+    static int column(Node n)
+    {
+        if(n.getData() instanceof Connect3.Position)
+            return ((Connect3.Position)n.getData()).getLastColumn();
+        return ((ConnectK.Position)n.getData()).getLastColumn();
+    }
+
+    /**
+     * Reads a list of columns
+     *
+     * @param moves Comma separated columns, or - for none
+     * @return The columns
+     */
+    static int[] parseMoves(String moves)
+    {
+        if(moves.equals("-"))
+            return new int[0];
+
+        String[] words = moves.split(",");
+        int[] columns = new int[words.length];
+        for(int i = 0; i < words.length; i++)
+            columns[i] = Integer.parseInt(words[i]);
+        return columns;
+    }
+
+    /**
+     * Writes a list of columns the way parseMoves reads it
+     *
+     * @param moves The columns
+     * @return Comma separated columns, or - for none
+     */
+    static String formatMoves(int[] moves)
+    {
+        if(moves.length == 0)
+            return "-";
+
+        StringBuilder answer = new StringBuilder();
+        for(int i = 0; i < moves.length; i++)
+        {
+            if(i > 0)
+                answer.append(',');
+            answer.append(moves[i]);
+        }
+        return answer.toString();
+    }
+}
@@ -0,0 +1,311 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Sends each position to the cheapest way of finding its best move instead of searching every position to the end:
+ *   strategy     positions covered by a compiled Strategy are answered by a lookup
+ *   oracle       games that are sums of components are scored from Grundy values, and games with a formula for
+ *                their score from it, without searching
+ *   table        positions in a table from RetrogradeSolver are looked up
+ *   exhaustive   positions with at most a set number of moves left are searched to the end by Solver
+ *   anytime      everything else gets Monte Carlo tree search with a time budget
+ * The first route that applies is taken. How often each route was taken and how long it took is kept for reporting.
+ * Like Solver, one router can be used by many threads at once. Anytime searches share one pool of threads for the
+ * life of the router, so moves searched at the same time take turns on the cores instead of each starting threads for
+ * every core; shutdown stops it.
+ *
+ * @author Jeff DeSain
+ */
+public class EngineRouter
+{
+    public static final int ORACLE = 0; //Route for games that are sums of components
+    public static final int TABLE = 1; //Route for positions in the solved table
+    public static final int EXHAUSTIVE = 2; //Route for positions searched to the end
+    public static final int ANYTIME = 3; //Route for positions searched within a time budget
+    public static final int STRATEGY = 4; //Route for positions covered by a compiled strategy
+    private static final String[] ROUTE_NAMES = {"oracle", "table", "exhaustive", "anytime", "strategy"};
+                                                         //Indexed by route
+
+    public static final int DEFAULT_LIMIT = 22; //Default most moves left to search to the end, about 1 s of connect 4
+    public static final long DEFAULT_THINK = 1000; //Default milliseconds for an anytime search
+    private static final String USAGE = "Usage: java EngineRouter [-limit moves_left] [-time ms] [-load file]"
+            + " [-strategy file] " + Games.USAGE; //Usage statement
+
+    private Game game; //The game being played
+    private Solver solver; //Searches to the end, using the table when there is one
+    private RetrogradeTable table; //Score of every configuration, null if the game has not been solved
+    private int exhaustiveLimit; //Most moves left for an exhaustive search
+    private long thinkMillis; //Milliseconds for an anytime search
+    private volatile Strategy strategy; //Moves chosen ahead of time, null if there are none
+    private final ExecutorService anytimeThreads; //Grows the anytime route's trees, one thread per core
+
+    private final LongAdder[] moves = new LongAdder[ROUTE_NAMES.length]; //Moves sent down each route
+    private final LongAdder[] nanos = new LongAdder[ROUTE_NAMES.length]; //Time spent on each route
+    private final LongAdder[] movesLeft = new LongAdder[ROUTE_NAMES.length]; //Sum of the estimates on each route
+
+
+    /**
+     * Uses the default limit and budget, with no solved table
+     *
+     * @param game The game being played
+     * @param cache Scores of already solved configurations
+     */
+    public EngineRouter(Game game, TranspositionTable cache)
+    {
+        this(game, cache, null, DEFAULT_LIMIT, DEFAULT_THINK);
+    }
+
+    /**
+     * @param game The game being played
+     * @param cache Scores of already solved configurations
+     * @param table Score of every configuration, or null
+     * @param exhaustiveLimit Most moves left for an exhaustive search
+     * @param thinkMillis Milliseconds for an anytime search
+     */
+    public EngineRouter(Game game, TranspositionTable cache, RetrogradeTable table, int exhaustiveLimit,
+                        long thinkMillis)
+    {
+        if(exhaustiveLimit < 0 || thinkMillis < 1)
+            throw new IllegalArgumentException("Need a limit of at least 0 and a budget of at least 1 ms");
+
+        this.game = game;
+        this.solver = new Solver(game, cache, table);
+        this.table = table;
+        this.exhaustiveLimit = exhaustiveLimit;
+        this.thinkMillis = thinkMillis;
+        this.anytimeThreads = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "anytime search");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for(int i = 0; i < ROUTE_NAMES.length; i++)
+        {
+            moves[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+            movesLeft[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        Game game = null;
+        int limit = DEFAULT_LIMIT;
+        long time = DEFAULT_THINK;
+        String load = null;
+        String strategy = null;
+        int first = 0;
+
+        try
+        {
+            while(first + 1 < args.length && args[first].startsWith("-"))
+            {
+                if(args[first].equals("-limit"))
+                    limit = Integer.parseInt(args[first + 1]);
+                else if(args[first].equals("-time"))
+                    time = Long.parseLong(args[first + 1]);
+                else if(args[first].equals("-load"))
+                    load = args[first + 1];
+                else if(args[first].equals("-strategy"))
+                    strategy = args[first + 1];
+                else
+                    throw new IllegalArgumentException();
+                first += 2;
+            }
+            game = Games.parse(args, first);
+
+            if(load != null && !(game instanceof RetrogradeGame))
+                throw new IllegalArgumentException();
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        EngineRouter router = null;
+        try
+        {
+            RetrogradeTable table = load == null ? null : RetrogradeTable.load((RetrogradeGame)game, load);
+            router = new EngineRouter(game, new UnboundedTable(), table, limit, time);
+            if(strategy != null)
+                router.setStrategy(Strategy.load(game, String.join(" ", Arrays.copyOfRange(args, first,
+                        args.length)), strategy));
+        }
+        catch(IllegalArgumentException | IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        //Play the game out, both sides chosen by the router
+        System.out.println(game);
+        while(!game.gameOver())
+        {
+            Node position = game.getCurrentPosition();
+            int route = router.route(position);
+            Node move = router.getMove(position);
+            if(move == null)
+                break;
+
+            System.out.println("Move by " + ROUTE_NAMES[route] + ", score "
+                    + (route == ANYTIME ? "unknown" : String.valueOf(move.getScore())) + ":");
+            game.update(move);
+            System.out.println(game);
+        }
+
+        System.out.print(router.report());
+        router.shutdown();
+    }
+
+    /**
+     * Gets the best move for the current game
+     *
+     * @return A node containing the configuration of the best move, null if the game is over
+     */
+    public Node getMove()
+    {
+        solver.getCache().newSearch();
+        return getMove(game.getCurrentPosition());
+    }
+
+    /**
+     * Gets the best move from any configuration of the game, found by the cheapest route that applies. Moves found
+     * by the anytime route are only the likely best and their score is not set, so callers check route(n) first. A game
+     * that is over is not sent down any route or counted in the report.
+     *
+     * @param n The configuration to move from
+     * @return A node containing the configuration of the best move, null if the game is over
+     */
+    public Node getMove(Node n)
+    {
+        //Every route but the anytime one would hand back the finished configuration itself as the move
+        if(game.isGoal(n) || game.getNeighbors(n).isEmpty())
+            return null;
+
+        int route = route(n);
+        long start = System.nanoTime();
+        Node move;
+
+        if(route == STRATEGY)
+        {
+            move = strategy.respond(n);
+        }
+        else if(route == ANYTIME)
+        {
+            MonteCarloSolver search = new MonteCarloSolver(game, Runtime.getRuntime().availableProcessors(),
+                    thinkMillis, 0, anytimeThreads);
+            move = search.getMove(n);
+        }
+        else
+        {
+            move = solver.getMove(n);
+        }
+
+        moves[route].increment();
+        nanos[route].add(System.nanoTime() - start);
+        movesLeft[route].add(Math.max(0, game.movesLeft(n)));
+        return move;
+    }
+
+    /**
+     * Chooses the route for a configuration
+     *
+     * @param n A particular configuration
+     * @return STRATEGY, ORACLE, TABLE, EXHAUSTIVE or ANYTIME
+     */
+    public int route(Node n)
+    {
+        Strategy current = strategy;
+        if(current != null && current.covers(n))
+            return STRATEGY;
+        if(game instanceof SumGame || game instanceof Oracle)
+            return ORACLE;
+        if(table != null && table.value(n) != TranspositionTable.MISS)
+            return TABLE;
+
+        int left = game.movesLeft(n);
+        return left < 0 || left <= exhaustiveLimit ? EXHAUSTIVE : ANYTIME;
+    }
+
+    /**
+     * Stops the anytime route's threads once the searches running on them finish. The router cannot search with that
+     * route afterwards.
+     */
+    public void shutdown()
+    {
+        anytimeThreads.shutdown();
+    }
+
+    /**
+     * Sets moves chosen ahead of time, which are played instead of searching wherever they cover a position
+     *
+     * @param strategy The strategy, exported for this game, or null for none
+     */
+    public void setStrategy(Strategy strategy)
+    {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @param route STRATEGY, ORACLE, TABLE, EXHAUSTIVE or ANYTIME
+     * @return Number of moves sent down the route
+     */
+    public long getMoves(int route)
+    {
+        return moves[route].sum();
+    }
+
+    /**
+     * @param route STRATEGY, ORACLE, TABLE, EXHAUSTIVE or ANYTIME
+     * @return Nanoseconds spent on the route
+     */
+    public long getNanos(int route)
+    {
+        return nanos[route].sum();
+    }
+
+    /**
+     * Describes how often each route was taken, the average moves left in the positions sent down it and how long
+     * it took
+     *
+     * @return One line per route that has been taken
+     */
+    public String report()
+    {
+        StringBuilder answer = new StringBuilder();
+
+        for(int i = 0; i < ROUTE_NAMES.length; i++)
+        {
+            long count = moves[i].sum();
+            if(count > 0)
+            {
+                answer.append(String.format("%-10s moves %d  avg moves left %.1f  total %d ms  avg %d us%n",
+                        ROUTE_NAMES[i], count, (double)movesLeft[i].sum() / count, nanos[i].sum() / 1000000,
+                        nanos[i].sum() / count / 1000));
+            }
+        }
+        return answer.toString();
+    }
+
+    /**
+     * Describes the moves sent down each route in one line
+     *
+     * @return route=moves for each route
+     */
+    public String summary()
+    {
+        StringBuilder answer = new StringBuilder();
+
+        for(int i = 0; i < ROUTE_NAMES.length; i++)
+        {
+            if(i > 0)
+                answer.append(' ');
+            answer.append(ROUTE_NAMES[i]).append('=').append(moves[i].sum());
+        }
+        return answer.toString();
+    }
+}
@@ -1,7 +1,9 @@
 import java.util.*;
 
 /**
- * Interface for any games the solver will solve
+ * Interface for any games the solver will solve. getNeighbors, isGoal and setScore must only depend on the node they
+ * are given, never on the game's current position, so that many searches can run on one game at the same time.
+ * Configurations held by nodes must not be modified once created.
  *
  * @author Jeff DeSain
  */
@@ -14,6 +16,33 @@ public interface Game
      */
     ArrayList<Node> getNeighbors(Node n);
 
+    /**
+     * Returns the configurations a search should try from a configuration, building each one only when the iteration
+     * reaches it. A search that stops early, such as after finding a winning move, then never builds the rest. Games
+     * may order the moves best first and leave out moves that cannot change the score of n, as long as at least one
+     * best move is kept, so anything that needs every move, such as counting or undoing them, uses getNeighbors. The
+     * default builds every move up front with getNeighbors.
+     *
+     * @param n A particular configuration, not a goal
+     * @return The configurations to search from n
+     */
+    default Iterable<Node> moves(Node n)
+    {
+        return getNeighbors(n);
+    }
+
+    /**
+     * Determines whether a configuration is certain to end in a tie whatever either player does, so a search can
+     * score it without looking further. The default never says so.
+     *
+     * @param n A particular configuration
+     * @return True if the game can only be a tie, false if it is not over or cannot tell
+     */
+    default boolean isDraw(Node n)
+    {
+        return false;
+    }
+
     /**
      * Determines whether a particular configuration is a goal configuration
      *
@@ -50,4 +79,98 @@ public interface Game
      */
     void setScore(Node n, int score);
 
+    /**
+     * Gets a 64 bit key identifying a configuration, used by transposition tables. Equal configurations must have
+     * equal keys, and different configurations should almost never share one. The default only has the 32 bits of
+     * the node's hash code to work with, so games should override it.
+     *
+     * @param n A particular configuration
+     * @return The configuration's key
+     */
+    default long hashKey(Node n)
+    {
+        return TranspositionTable.mix(n.hashCode());
+    }
+
+
+    /**
+     * Estimates how hard a configuration is to solve, as the most moves that can still be made before the game is
+     * over. EngineRouter uses it to decide between searching to the end and a budgeted search.
+     *
+     * @param n A particular configuration
+     * @return The most moves left, or -1 if the game cannot tell
+     */
+    default int movesLeft(Node n)
+    {
+        return -1;
+    }
+
+    /**
+     * Gets the width of the codes made by encode, so they can be stored at a fixed size
+     *
+     * @return Number of bits in every code, from 1 to 64, or 0 if the game cannot encode its configurations
+     */
+    default int codeBits()
+    {
+        return 0;
+    }
+
+    /**
+     * Packs a configuration into the low codeBits() bits of a long, for tables, files and other processes. decode
+     * turns the code back into an equal configuration.
+     *
+     * @param n A particular configuration
+     * @return The configuration's code
+     * @throws UnsupportedOperationException If codeBits() is 0
+     * @throws IllegalArgumentException If n cannot be a configuration of this game, such as a board of another size
+     */
+    default long encode(Node n)
+    {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot encode configurations");
+    }
+
+    /**
+     * Unpacks a configuration packed by encode
+     *
+     * @param code The configuration's code
+     * @return The configuration
+     * @throws UnsupportedOperationException If codeBits() is 0
+     * @throws IllegalArgumentException If code is not the code of any configuration
+     */
+    default Node decode(long code)
+    {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot decode configurations");
+    }
+
+    /**
+     * Packs a configuration into as few bytes as hold codeBits() bits, most significant byte first
+     *
+     * @param n A particular configuration
+     * @return The configuration's code
+     */
+    default byte[] encodeBytes(Node n)
+    {
+        long code = encode(n);
+        byte[] bytes = new byte[(codeBits() + 7) / 8];
+        for(int i = bytes.length - 1; i >= 0; i--, code >>>= 8)
+            bytes[i] = (byte)code;
+        return bytes;
+    }
+
+    /**
+     * Unpacks a configuration packed by encodeBytes
+     *
+     * @param bytes The configuration's code
+     * @return The configuration
+     */
+    default Node decodeBytes(byte[] bytes)
+    {
+        if(bytes.length != (codeBits() + 7) / 8)
+            throw new IllegalArgumentException("Codes are " + (codeBits() + 7) / 8 + " bytes, not " + bytes.length);
+
+        long code = 0;
+        for(byte b : bytes)
+            code = code << 8 | b & 0xff;
+        return decode(code);
+    }
 }
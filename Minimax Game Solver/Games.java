@@ -0,0 +1,84 @@
+import java.util.*;
+
+/**
+ * Builds games from command line arguments, for the tools that work with any game. A game is written as one of
+ *   takeaway num_coins
+ *   stones pile-1 pile-2 pile-N
+ *   connect3 width height
+ *   connectk width height k
+ * Connect3 and ConnectK start from an empty board with X to move.
+ *
+ * @author Jeff DeSain
+ */
+public class Games
+{
+    public static final String USAGE = "takeaway num_coins | stones pile-1 pile-2 pile-N | connect3 width height"
+            + " | connectk width height k"; //Usage for a game
+
+    /**
+     * Builds a game from the rest of the command line arguments
+     *
+     * @param args The command line arguments
+     * @param first Index of the game's name in args
+     * @return The game at its starting position
+     * @throws IllegalArgumentException If the arguments do not describe a game
+     */
+    public static Game parse(String[] args, int first)
+    {
+        if(first >= args.length)
+            throw new IllegalArgumentException("Missing game");
+
+        String name = args[first];
+        int count = args.length - first - 1;
+
+        if(name.equals("takeaway") && count == 1)
+        {
+            int coins = Integer.parseInt(args[first + 1]);
+            if(coins < 0)
+                throw new IllegalArgumentException("Coins cannot be negative");
+            return new TakeAway(coins);
+        }
+        else if(name.equals("stones") && count >= 1)
+        {
+            ArrayList<Integer> piles = new ArrayList<Integer>();
+            for(int i = first + 1; i < args.length; i++)
+            {
+                int pile = Integer.parseInt(args[i]);
+                if(pile < 0)
+                    throw new IllegalArgumentException("Piles cannot be negative");
+                piles.add(pile);
+            }
+            return new Stones(piles);
+        }
+        else if(name.equals("connect3") && count == 2)
+        {
+            int width = Integer.parseInt(args[first + 1]);
+            int height = Integer.parseInt(args[first + 2]);
+            if(width < 1 || height < 1)
+                throw new IllegalArgumentException("Invalid dimensions");
+            return new Connect3(emptyBoard(width, height), true);
+        }
+        else if(name.equals("connectk") && count == 3)
+        {
+            return new ConnectK(Integer.parseInt(args[first + 1]), Integer.parseInt(args[first + 2]),
+                    Integer.parseInt(args[first + 3]), true);
+        }
+
+        throw new IllegalArgumentException("Unknown game " + name);
+    }
+
+    /**
+     * Creates an empty Connect3 board
+     *
+     * @param width Number of columns
+     * @param height Number of rows
+     * @return The board
+     */
+    public static char[][] emptyBoard(int width, int height)
+    {
+        char[][] board = new char[width][height];
+        for(char[] column : board)
+            Arrays.fill(column, '.');
+        return board;
+    }
+}
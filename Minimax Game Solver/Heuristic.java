@@ -0,0 +1,18 @@
+/**
+ * Optional interface for games that can estimate who is ahead in a configuration without searching it, for searches
+ * that stop at a fixed depth instead of at the end of the game. The estimate is made at every configuration where such
+ * a search stops, so it should take a few operations rather than a look at the whole configuration.
+ *
+ * @author Jeff DeSain
+ */
+public interface Heuristic
+{
+    /**
+     * Estimates how good a configuration is for the player to move
+     *
+     * @param n A configuration that is not a goal
+     * @return Positive if the player to move is ahead, negative if they are behind, 0 if neither; the further from 0,
+     * the further ahead
+     */
+    int evaluate(Node n);
+}
@@ -0,0 +1,414 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Solver for games too large to search exhaustively. It runs Monte Carlo tree search with the UCT selection rule:
+ * every iteration walks down the tree to a leaf, adds the leaf's moves, plays random moves to the end of the game and
+ * adds the result to every position on the way back up. Each thread grows its own tree (root parallelization) and
+ * the visit counts of the root's moves are added together at the end, so no locking is needed while searching.
+ *
+ * The search is anytime: it stops after a time budget, an iteration budget or both, and the most visited move is
+ * played.
+ *
+ * @author Jeff DeSain
+ */
+public class MonteCarloSolver
+{
+    private static final String USAGE = "Usage: java MonteCarloSolver [-time ms] [-iterations n] [-threads n] "
+            + Games.USAGE; //Usage statement
+    private static final double EXPLORATION = 1.4; //Weight of the exploration term in UCT, scores are -1 to 1
+    private static final int NOT_OVER = 2; //Marks a tree node whose game is not over
+
+    private Game game; //The game being played
+    private int threads; //Number of trees searched at once
+    private long timeBudget; //Milliseconds per move, 0 for no limit
+    private long iterationBudget; //Iterations per move over all threads, 0 for no limit
+    private ExecutorService executor; //Runs the searches, null to start threads for each move
+
+    private long playouts; //Playouts made by the last getMove
+    private long elapsed; //Nanoseconds taken by the last getMove
+    private double expectedScore; //Average score of the chosen move for the player to move, from -1 to 1
+
+
+    /**
+     * Uses every core and a one second budget per move
+     *
+     * @param game The game being played
+     */
+    public MonteCarloSolver(Game game)
+    {
+        this(game, Runtime.getRuntime().availableProcessors(), 1000, 0);
+    }
+
+    /**
+     * @param game The game being played
+     * @param threads Number of trees searched at once
+     * @param timeBudget Milliseconds per move, 0 for no limit
+     * @param iterationBudget Iterations per move over all threads, 0 for no limit
+     */
+    public MonteCarloSolver(Game game, int threads, long timeBudget, long iterationBudget)
+    {
+        this(game, threads, timeBudget, iterationBudget, null);
+    }
+
+    /**
+     * Runs the searches on threads that outlive the solver, so callers making many short searches do not start new
+     * threads for each move. Searches from several solvers sharing the executor take turns on its threads.
+     *
+     * @param game The game being played
+     * @param threads Number of trees searched at once
+     * @param timeBudget Milliseconds per move, 0 for no limit
+     * @param iterationBudget Iterations per move over all threads, 0 for no limit
+     * @param executor Runs the searches, or null to start threads for each move
+     */
+    public MonteCarloSolver(Game game, int threads, long timeBudget, long iterationBudget, ExecutorService executor)
+    {
+        if(threads < 1 || timeBudget < 0 || iterationBudget < 0 || timeBudget == 0 && iterationBudget == 0)
+            throw new IllegalArgumentException("Need at least one thread and a time or iteration budget");
+
+        this.game = game;
+        this.threads = threads;
+        this.timeBudget = timeBudget;
+        this.iterationBudget = iterationBudget;
+        this.executor = executor;
+    }
+
+    public static void main(String[] args)
+    {
+        Game game = null;
+        long time = -1;
+        long iterations = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int first = 0;
+
+        try
+        {
+            while(first + 1 < args.length && args[first].startsWith("-"))
+            {
+                if(args[first].equals("-time"))
+                    time = Long.parseLong(args[first + 1]);
+                else if(args[first].equals("-iterations"))
+                    iterations = Long.parseLong(args[first + 1]);
+                else if(args[first].equals("-threads"))
+                    threads = Integer.parseInt(args[first + 1]);
+                else
+                    throw new IllegalArgumentException();
+                first += 2;
+            }
+            game = Games.parse(args, first);
+
+            //Without any budget, think for one second
+            if(time == -1)
+                time = iterations > 0 ? 0 : 1000;
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        MonteCarloSolver solver = null;
+        try
+        {
+            solver = new MonteCarloSolver(game, threads, time, iterations);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+        Node move = solver.getMove();
+
+        System.out.println(game);
+        System.out.printf("%d playouts on %d threads in %d ms, %.0f playouts/sec, expected score %.3f%n",
+                solver.getPlayouts(), threads, solver.getElapsed() / 1000000, solver.getPlayoutsPerSecond(),
+                solver.getExpectedScore());
+        if(move != null)
+            System.out.println("Best move:" + System.lineSeparator() + move.getData());
+    }
+
+    /**
+     * Gets the best move for the current game within the budget
+     *
+     * @return A node containing the configuration of the most visited move, null if the game is over
+     */
+    public Node getMove()
+    {
+        return getMove(game.getCurrentPosition());
+    }
+
+    /**
+     * Gets the best move from any configuration of the game within the budget
+     *
+     * @param root The configuration to move from
+     * @return A node containing the configuration of the most visited move, null if the game is over
+     */
+    public Node getMove(Node root)
+    {
+        ArrayList<Node> moves = game.isGoal(root) ? new ArrayList<Node>() : game.getNeighbors(root);
+
+        playouts = 0;
+        elapsed = 0;
+        expectedScore = 0;
+        if(moves.isEmpty())
+            return null;
+
+        long start = System.nanoTime();
+        long perThread = iterationBudget == 0 ? Long.MAX_VALUE : Math.max(1, iterationBudget / threads);
+
+        List<Callable<TreeNode>> searches = new ArrayList<Callable<TreeNode>>();
+        for(int i = 0; i < threads; i++)
+            searches.add(() -> search(root, moves, perThread));
+
+        long[] visits = new long[moves.size()];
+        double[] rewards = new double[moves.size()];
+        ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(threads);
+        try
+        {
+            for(Future<TreeNode> result : pool.invokeAll(searches))
+            {
+                TreeNode tree = result.get();
+                playouts += tree.visits;
+                for(int i = 0; i < visits.length; i++)
+                {
+                    visits[i] += tree.children[i].visits;
+                    rewards[i] += tree.children[i].reward;
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            if(pool != executor)
+                pool.shutdown();
+        }
+        elapsed = System.nanoTime() - start;
+
+        int best = 0;
+        for(int i = 1; i < visits.length; i++)
+        {
+            if(visits[i] > visits[best])
+                best = i;
+        }
+        if(visits[best] > 0)
+            expectedScore = rewards[best] / visits[best];
+
+        return moves.get(best);
+    }
+
+    /**
+     * @return Playouts made by the last getMove over all threads
+     */
+    public long getPlayouts()
+    {
+        return playouts;
+    }
+
+    /**
+     * @return Nanoseconds taken by the last getMove
+     */
+    public long getElapsed()
+    {
+        return elapsed;
+    }
+
+    /**
+     * @return Playouts per second over all threads during the last getMove
+     */
+    public double getPlayoutsPerSecond()
+    {
+        return elapsed == 0 ? 0 : playouts * 1e9 / elapsed;
+    }
+
+    /**
+     * @return Average result of the chosen move for the player to move, from -1 (always lost) to 1 (always won)
+     */
+    public double getExpectedScore()
+    {
+        return expectedScore;
+    }
+
+    /**
+     * Grows one tree until the budget runs out
+     *
+     * @param root The current position
+     * @param moves The moves from the current position, shared read-only by every thread
+     * @param iterations Maximum number of iterations
+     * @return The root of the tree
+     */
+    private TreeNode search(Node root, ArrayList<Node> moves, long iterations)
+    {
+        //The budget starts when the tree does, so a search that waited for a shared thread still gets all of it
+        long deadline = timeBudget == 0 ? Long.MAX_VALUE : System.nanoTime() + timeBudget * 1000000;
+        Random random = ThreadLocalRandom.current();
+        TreeNode tree = new TreeNode(root, NOT_OVER);
+        ArrayList<TreeNode> path = new ArrayList<TreeNode>();
+
+        tree.children = new TreeNode[moves.size()];
+        for(int i = 0; i < moves.size(); i++)
+            tree.children[i] = newTreeNode(moves.get(i));
+
+        //A playout can take far longer than the budget divided by 64, so the clock is read every iteration
+        for(long i = 0; i < iterations && System.nanoTime() < deadline; i++)
+        {
+            TreeNode current = tree;
+            path.clear();
+            path.add(current);
+
+            //Selection
+            while(current.children != null && current.terminal == NOT_OVER)
+            {
+                current = select(current);
+                path.add(current);
+            }
+
+            //Expansion, once a leaf has been visited before
+            if(current.terminal == NOT_OVER && current.visits > 0)
+            {
+                expand(current);
+                if(current.terminal == NOT_OVER)
+                {
+                    current = current.children[0];
+                    path.add(current);
+                }
+            }
+
+            //Simulation, scored for the player to move at current
+            int value = current.terminal != NOT_OVER ? current.terminal : playout(current.position, random);
+
+            //Backpropagation, each node's reward is for the player who moved into it
+            for(int j = path.size() - 1; j >= 0; j--)
+            {
+                TreeNode node = path.get(j);
+                node.visits++;
+                node.reward -= value;
+                value = -value;
+            }
+        }
+
+        return tree;
+    }
+
+    /**
+     * Chooses the child with the highest upper confidence bound, trying every child once first
+     *
+     * @param parent A node with children
+     * @return The chosen child
+     */
+    private static TreeNode select(TreeNode parent)
+    {
+        TreeNode best = null;
+        double bestBound = Double.NEGATIVE_INFINITY;
+        double logVisits = Math.log(parent.visits + 1);
+
+        for(TreeNode child : parent.children)
+        {
+            if(child.visits == 0)
+                return child;
+
+            double bound = child.reward / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+            if(bound > bestBound)
+            {
+                bestBound = bound;
+                best = child;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Adds a node's moves to the tree, or marks it as a tie if it has none
+     *
+     * @param node A leaf whose game is not over
+     */
+    private void expand(TreeNode node)
+    {
+        ArrayList<Node> neighbors = game.getNeighbors(node.position);
+
+        if(neighbors.isEmpty())
+        {
+            node.terminal = 0;
+            return;
+        }
+
+        node.children = new TreeNode[neighbors.size()];
+        for(int i = 0; i < neighbors.size(); i++)
+            node.children[i] = newTreeNode(neighbors.get(i));
+    }
+
+    /**
+     * Creates a tree node, scoring it right away if the game is over
+     *
+     * @param n The configuration
+     * @return The tree node
+     */
+    private TreeNode newTreeNode(Node n)
+    {
+        if(!game.isGoal(n))
+            return new TreeNode(n, NOT_OVER);
+
+        //setScore gives the score for the player to move
+        game.setScore(n, 1);
+        return new TreeNode(n, n.getScore());
+    }
+
+    /**
+     * Plays random moves to the end of the game
+     *
+     * @param n A configuration whose game is not over
+     * @param random Source of random moves
+     * @return 1 if the player to move in n wins, -1 if they lose, 0 if tie
+     */
+    private int playout(Node n, Random random)
+    {
+        if(game instanceof Playout)
+            return ((Playout)game).playout(n, random);
+
+        boolean sameMover = true;
+        while(true)
+        {
+            ArrayList<Node> neighbors = game.getNeighbors(n);
+            if(neighbors.isEmpty())
+                return 0;
+
+            n = neighbors.get(random.nextInt(neighbors.size()));
+            sameMover = !sameMover;
+            if(game.isGoal(n))
+            {
+                game.setScore(n, 1);
+                return sameMover ? n.getScore() : -n.getScore();
+            }
+        }
+    }
+
+
+    /**
+     * A position in one thread's search tree
+     */
+    private static final class TreeNode
+    {
+        private final Node position; //The configuration
+        private TreeNode[] children; //Null until expanded
+        private int terminal; //Score for the player to move if the game is over, NOT_OVER otherwise
+        private long visits; //Number of playouts through this node
+        private double reward; //Sum of their results for the player who moved into this node
+
+        /**
+         * @param position The configuration
+         * @param terminal Score for the player to move if the game is over, NOT_OVER otherwise
+         */
+        TreeNode(Node position, int terminal)
+        {
+            this.position = position;
+            this.terminal = terminal;
+        }
+    }
+}
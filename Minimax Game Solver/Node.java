@@ -1,3 +1,5 @@
+import java.util.*;
+
 /**
  * @author Jeff DeSain
  */
@@ -50,9 +52,33 @@ public class Node<E>{
      */
     public int hashCode()
     {
+        //Arrays such as the Connect3 board only have identity hash codes, so hash their contents
+        if(data instanceof Object[])
+            return Arrays.deepHashCode((Object[])data);
+
         return data.hashCode();
     }
 
+    /**
+     * Two nodes are equal if they hold the same configuration
+     *
+     * @param o The other object
+     * @return True if o is a node with an equal configuration
+     */
+    public boolean equals(Object o)
+    {
+        if(this == o)
+            return true;
+        if(!(o instanceof Node))
+            return false;
+
+        Object other = ((Node)o).data;
+        if(data instanceof Object[] && other instanceof Object[])
+            return Arrays.deepEquals((Object[])data, (Object[])other);
+
+        return data.equals(other);
+    }
+
     /**
      *
      * @return A string representation for this object
@@ -0,0 +1,89 @@
+import java.nio.*;
+
+/**
+ * Transposition table whose slots live outside the Java heap in direct byte buffers, so the garbage collector never
+ * scans it and a table of many gigabytes does not lengthen collection pauses. A single buffer is limited to 2
+ * gigabytes, so the table is split into 1 gigabyte chunks. Each slot is 16 bytes: the stored key, the packed data and
+ * 4 bytes of padding that keep every key 8 byte aligned. See PackedTable for how entries are replaced.
+ *
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the maximum heap size, so large tables need
+ * that option raised.
+ *
+ * @author Jeff DeSain
+ */
+public class OffHeapTable extends PackedTable
+{
+    public static final int SLOT_BYTES = 16; //Stored key, data and padding
+    private static final int CHUNK_SHIFT = 30 - 4; //log 2 of the slots in a 1 gigabyte chunk
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1; //Slot index within a chunk
+    private static final long MAX_BUCKETS = 1L << 40; //Far beyond any machine's memory
+
+    private final ByteBuffer[] chunks; //The slots
+
+
+    /**
+     * @param megabytes Most memory the table may use
+     */
+    public OffHeapTable(int megabytes)
+    {
+        this(bucketsFor((long)megabytes * 1024 * 1024, SLOT_BYTES, MAX_BUCKETS));
+    }
+
+    /**
+     * @param buckets Number of buckets, a power of two
+     */
+    private OffHeapTable(long buckets)
+    {
+        super(buckets);
+
+        long slots = buckets * 2;
+        int count = (int)((slots + CHUNK_MASK) >>> CHUNK_SHIFT);
+        chunks = new ByteBuffer[count];
+        for(int i = 0; i < count; i++)
+        {
+            long chunkSlots = Math.min(slots - ((long)i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+            chunks[i] = ByteBuffer.allocateDirect((int)(chunkSlots * SLOT_BYTES)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Reads the key stored in a slot
+     *
+     * @param slot The slot
+     * @return The stored key
+     */
+    @Override
+    protected long readKey(long slot)
+    {
+        return chunks[(int)(slot >>> CHUNK_SHIFT)].getLong((int)(slot & CHUNK_MASK) * SLOT_BYTES);
+    }
+
+    /**
+     * Reads the data stored in a slot
+     *
+     * @param slot The slot
+     * @return The packed data, 0 if the slot is empty
+     */
+    @Override
+    protected int readData(long slot)
+    {
+        return chunks[(int)(slot >>> CHUNK_SHIFT)].getInt((int)(slot & CHUNK_MASK) * SLOT_BYTES + 8);
+    }
+
+    /**
+     * Writes a slot
+     *
+     * @param slot The slot
+     * @param storedKey The real key XOR d
+     * @param d The packed data
+     */
+    @Override
+    protected void writeSlot(long slot, long storedKey, int d)
+    {
+        ByteBuffer chunk = chunks[(int)(slot >>> CHUNK_SHIFT)];
+        int offset = (int)(slot & CHUNK_MASK) * SLOT_BYTES;
+
+        chunk.putLong(offset, storedKey);
+        chunk.putInt(offset + 8, d);
+    }
+}
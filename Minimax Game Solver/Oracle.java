@@ -0,0 +1,17 @@
+/**
+ * Optional interface for games whose configurations can be scored by a formula instead of a search. Solver scores
+ * every configuration it meets this way instead of searching below it, and EngineRouter sends such games down its
+ * oracle route, so even configurations too deep to search are answered at once.
+ *
+ * @author Jeff DeSain
+ */
+public interface Oracle
+{
+    /**
+     * Scores a configuration without searching
+     *
+     * @param n A particular configuration
+     * @return 1 if the player to move wins, -1 if they lose, 0 if tie
+     */
+    int value(Node n);
+}
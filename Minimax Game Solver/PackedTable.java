@@ -0,0 +1,225 @@
+import java.util.concurrent.atomic.*;
+
+/**
+ * Base for transposition tables with a fixed number of fixed width slots, so a long running process uses a
+ * predictable amount of memory. Subclasses decide where the slots are stored. Slots are grouped into buckets of two,
+ * chosen by the low bits of the key:
+ *
+ *   slot 0 is depth-preferred: it keeps whichever entry took more work to compute, unless its entry is stale
+ *   slot 1 is always-replace: it takes every entry that slot 0 turns down, and whatever slot 0 evicts
+ *
+ * Entries remember the search they were stored in, and entries from earlier searches are replaced first, so old
+ * results age out between calls to getMove.
+ *
+ * The table is lock free. A slot's key is stored XORed with its data, so a reader that sees a half written slot gets
+ * a key that does not match and treats it as a miss.
+ *
+ * @author Jeff DeSain
+ */
+public abstract class PackedTable implements TranspositionTable
+{
+    //Layout of the data int, which is never 0 for a used slot
+    private static final int USED = 1;
+    private static final int SCORE_SHIFT = 1; //3 bits, score + 2, so bounds fit too
+    private static final int WORK_SHIFT = 4; //6 bits
+    private static final int AGE_SHIFT = 10; //8 bits
+
+    private final long mask; //Number of buckets - 1
+    private volatile int age; //Number of the current search, mod 256
+
+    private final LongAdder lookups = new LongAdder(); //Number of lookups
+    private final LongAdder hits = new LongAdder(); //Number of lookups that found a score
+
+
+    /**
+     * @param buckets Number of buckets, a power of two
+     */
+    protected PackedTable(long buckets)
+    {
+        if(buckets < 1 || Long.bitCount(buckets) != 1)
+            throw new IllegalArgumentException("Number of buckets must be a power of two");
+        mask = buckets - 1;
+    }
+
+    /**
+     * Finds the largest number of buckets that fits in a memory budget
+     *
+     * @param bytes The memory budget
+     * @param slotBytes Size of one slot
+     * @param maxBuckets Most buckets the storage can hold
+     * @return The number of buckets, a power of two
+     */
+    protected static long bucketsFor(long bytes, int slotBytes, long maxBuckets)
+    {
+        long slots = bytes / slotBytes;
+        long buckets = 1;
+
+        if(slots < 2)
+            throw new IllegalArgumentException("Table is too small");
+        while(buckets * 4 <= slots && buckets < maxBuckets)
+            buckets *= 2;
+
+        return buckets;
+    }
+
+    /**
+     * Reads the key stored in a slot, which is the real key XOR the slot's data
+     *
+     * @param slot The slot
+     * @return The stored key
+     */
+    protected abstract long readKey(long slot);
+
+    /**
+     * Reads the data stored in a slot
+     *
+     * @param slot The slot
+     * @return The packed data, 0 if the slot is empty
+     */
+    protected abstract int readData(long slot);
+
+    /**
+     * Writes a slot. The stored key is written before the data.
+     *
+     * @param slot The slot
+     * @param storedKey The real key XOR d
+     * @param d The packed data
+     */
+    protected abstract void writeSlot(long slot, long storedKey, int d);
+
+    /**
+     * @return Number of slots in the table
+     */
+    public long capacity()
+    {
+        return (mask + 1) * 2;
+    }
+
+    /**
+     * Finds the score of a configuration
+     *
+     * @param key The configuration's key
+     * @return The stored score, or MISS
+     */
+    @Override
+    public int lookup(long key)
+    {
+        long slot = (key & mask) * 2;
+
+        lookups.increment();
+        for(long i = slot; i < slot + 2; i++)
+        {
+            int d = readData(i);
+            if(d != 0 && (readKey(i) ^ d) == key)
+            {
+                hits.increment();
+                return ((d >>> SCORE_SHIFT) & 7) - 2;
+            }
+        }
+
+        return MISS;
+    }
+
+    /**
+     * Saves the score of a configuration, replacing entries as described above
+     *
+     * @param key The configuration's key
+     * @param score 1 if the player to move wins, -1 if they lose, 0 if tie, or a bound
+     * @param work log 2 of the number of configurations searched to find the score, kept between 0 and 63
+     */
+    @Override
+    public void store(long key, int score, int work)
+    {
+        long slot = (key & mask) * 2;
+        int currentAge = age;
+
+        //A negative work would spill into the age bits and make the entry look like the costliest one ever stored
+        work = Math.max(0, Math.min(work, 63));
+        int d = USED | (score + 2) << SCORE_SHIFT | work << WORK_SHIFT | currentAge << AGE_SHIFT;
+
+        int oldData = readData(slot);
+        long oldKey = readKey(slot) ^ oldData;
+
+        if(oldData == 0 || oldKey == key || workOf(oldData) <= work || ageOf(oldData) != currentAge)
+        {
+            //Slot 0 takes the entry, and a different entry it held from this search moves down to slot 1
+            if(oldData != 0 && oldKey != key && ageOf(oldData) == currentAge)
+                write(slot + 1, oldKey, oldData);
+            write(slot, key, d);
+        }
+        else
+            write(slot + 1, key, d);
+    }
+
+    /**
+     * Starts a new search, which makes every entry stored so far stale
+     */
+    @Override
+    public void newSearch()
+    {
+        age = (age + 1) & 255;
+    }
+
+    /**
+     * @return Number of configurations stored
+     */
+    @Override
+    public long size()
+    {
+        long used = 0;
+        for(long i = capacity() - 1; i >= 0; i--)
+        {
+            if(readData(i) != 0)
+                used++;
+        }
+        return used;
+    }
+
+    /**
+     * @return Fraction of lookups that found a score
+     */
+    @Override
+    public double hitRate()
+    {
+        long total = lookups.sum();
+        return total == 0 ? 0 : (double)hits.sum() / total;
+    }
+
+    /**
+     * @return Fraction of slots in use
+     */
+    public double occupancy()
+    {
+        return (double)size() / capacity();
+    }
+
+    /**
+     * Writes a slot
+     *
+     * @param i The slot
+     * @param key The key
+     * @param d The packed data
+     */
+    private void write(long i, long key, int d)
+    {
+        writeSlot(i, key ^ d, d);
+    }
+
+    /**
+     * @param d Packed data
+     * @return The work stored in it
+     */
+    private static int workOf(int d)
+    {
+        return (d >>> WORK_SHIFT) & 63;
+    }
+
+    /**
+     * @param d Packed data
+     * @return The age stored in it
+     */
+    private static int ageOf(int d)
+    {
+        return (d >>> AGE_SHIFT) & 255;
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Counts the configurations a fixed number of moves from a position, using nothing but getNeighbors and isGoal. A game
+ * that is over has no moves, so it only counts at the depth it is reached. The counts say exactly what tree a move
+ * generator builds, so a faster generator can be checked against the known good counts in perft.txt, and the time
+ * taken measures the generator alone.
+ *
+ * perft.txt has one count per line, written as depth count game, with # starting a comment.
+ *
+ * @author Jeff DeSain
+ */
+public class Perft
+{
+    private static final String USAGE = "Usage: java Perft [-threads n] depth " + Games.USAGE
+            + System.lineSeparator() + "       java Perft [-threads n] -check file"; //Usage statement
+
+    private Game game; //The game being counted
+    private int threads; //Number of threads counting at once, 1 to count on the calling thread
+    private final LongAdder visited = new LongAdder(); //Configurations visited, leaves included
+
+
+    /**
+     * @param game The game being counted
+     * @param threads Number of threads counting at once, 1 to count on the calling thread
+     */
+    public Perft(Game game, int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("Need at least one thread");
+
+        this.game = game;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args)
+    {
+        int threads = 1;
+        int first = 0;
+
+        try
+        {
+            if(args.length >= 2 && args[0].equals("-threads"))
+            {
+                threads = Integer.parseInt(args[1]);
+                if(threads < 1)
+                    throw new IllegalArgumentException();
+                first = 2;
+            }
+            if(first + 2 == args.length && args[first].equals("-check"))
+            {
+                System.exit(check(args[first + 1], threads) ? 0 : 1);
+            }
+            else if(first + 1 < args.length)
+            {
+                int depth = Integer.parseInt(args[first]);
+                Game game = Games.parse(args, first + 1);
+                if(depth < 0)
+                    throw new IllegalArgumentException();
+
+                //Print every depth up to the one asked for, so a difference shows where it starts
+                for(int d = 1; d <= depth; d++)
+                {
+                    Perft perft = new Perft(game, threads);
+                    long start = System.nanoTime();
+                    long count = perft.count(game.getCurrentPosition(), d);
+                    long elapsed = System.nanoTime() - start;
+
+                    System.out.printf("depth %2d  %15d leaves  %15d visited  %8d ms  %12.0f visited/sec%n", d, count,
+                            perft.getVisited(), elapsed / 1000000, perft.getVisited() * 1e9 / elapsed);
+                }
+                return;
+            }
+            throw new IllegalArgumentException();
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Checks every count in a file
+     *
+     * @param fileName The file, with lines of depth count game
+     * @param threads Number of threads counting at once
+     * @return True if every count matched
+     */
+    private static boolean check(String fileName, int threads)
+    {
+        boolean passed = true;
+        int checked = 0;
+
+        try(BufferedReader in = new BufferedReader(new FileReader(fileName)))
+        {
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                if(line.contains("#"))
+                    line = line.substring(0, line.indexOf('#'));
+                line = line.trim();
+                if(line.isEmpty())
+                    continue;
+
+                String[] words = line.split("\\s+");
+                int depth = Integer.parseInt(words[0]);
+                long expected = Long.parseLong(words[1]);
+                Game game = Games.parse(words, 2);
+
+                long start = System.nanoTime();
+                long count = new Perft(game, threads).count(game.getCurrentPosition(), depth);
+                long elapsed = System.nanoTime() - start;
+
+                boolean match = count == expected;
+                passed &= match;
+                checked++;
+                System.out.printf("%-4s %-30s depth %2d  %12d%s  %6d ms%n", match ? "ok" : "FAIL",
+                        String.join(" ", Arrays.copyOfRange(words, 2, words.length)), depth, count,
+                        match ? "" : " expected " + expected, elapsed / 1000000);
+            }
+        }
+        catch(IOException e)
+        {
+            System.err.println("Cannot read " + fileName + ": " + e.getMessage());
+            return false;
+        }
+
+        System.out.println(passed ? "All " + checked + " counts match" : "Some counts do not match");
+        return passed;
+    }
+
+    /**
+     * Counts the configurations exactly depth moves from a configuration. With more than one thread, each of the
+     * configuration's moves is counted as a separate task.
+     *
+     * @param n The configuration
+     * @param depth Number of moves
+     * @return Number of configurations reached
+     */
+    public long count(Node n, int depth)
+    {
+        if(threads == 1 || depth < 2 || game.isGoal(n))
+            return countFrom(n, depth);
+
+        visited.increment();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+        for(Node neighbor : game.getNeighbors(n))
+            tasks.add(() -> countFrom(neighbor, depth - 1));
+
+        long total = 0;
+        try
+        {
+            for(Future<Long> result : executor.invokeAll(tasks))
+                total += result.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Count interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        return total;
+    }
+
+    /**
+     * @return Configurations visited by count so far, leaves included
+     */
+    public long getVisited()
+    {
+        return visited.sum();
+    }
+
+    /**
+     * Counts on the calling thread
+     *
+     * @param n The configuration
+     * @param depth Number of moves
+     * @return Number of configurations reached
+     */
+    private long countFrom(Node n, int depth)
+    {
+        long[] seen = new long[1];
+        long count = countFrom(n, depth, seen);
+        visited.add(seen[0]);
+        return count;
+    }
+
+    /**
+     * Recursively counts the configurations exactly depth moves from a configuration
+     *
+     * @param n The configuration
+     * @param depth Number of moves
+     * @param seen Counts the configurations visited
+     * @return Number of configurations reached
+     */
+    private long countFrom(Node n, int depth, long[] seen)
+    {
+        seen[0]++;
+        if(depth == 0)
+            return 1;
+        if(game.isGoal(n))
+            return 0;
+
+        long count = 0;
+        for(Node neighbor : game.getNeighbors(n))
+            count += countFrom(neighbor, depth - 1, seen);
+
+        return count;
+    }
+}
@@ -0,0 +1,19 @@
+import java.util.*;
+
+/**
+ * Optional interface for games that can play random moves to the end of a game without building a node for every
+ * configuration on the way. MonteCarloSolver uses it instead of repeated calls to getNeighbors when a game provides it.
+ *
+ * @author Jeff DeSain
+ */
+public interface Playout
+{
+    /**
+     * Plays uniformly random moves from a configuration until the game is over
+     *
+     * @param n A configuration that is not a goal
+     * @param random Source of random moves
+     * @return 1 if the player to move in n wins, -1 if they lose, 0 if tie
+     */
+    int playout(Node n, Random random);
+}
@@ -0,0 +1,77 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Uses the time the player spends choosing a move. While the player thinks, a background thread solves the position
+ * after each of their possible moves, which fills the solver's cache; once the player commits, the AI's search from
+ * the resulting position finds its moves already solved. Pondering stops as soon as the player moves so it does not
+ * compete with the real search.
+ *
+ * @author Jeff DeSain
+ */
+public class Ponderer
+{
+    private final Game game; //The game being played
+    private final Solver solver; //The solver whose cache is filled
+    private final ExecutorService executor; //Runs the background search
+    private Future<?> pondering; //The current background search, null if none
+
+
+    /**
+     * @param game The game being played
+     * @param solver The solver the AI uses to pick its moves
+     */
+    public Ponderer(Game game, Solver solver)
+    {
+        this.game = game;
+        this.solver = solver;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ponder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts solving the positions after each of the player's moves from the current position
+     */
+    public synchronized void start()
+    {
+        stop();
+
+        Node position = game.getCurrentPosition();
+        if(game.isGoal(position))
+            return;
+
+        pondering = executor.submit(() -> {
+            for(Node reply : game.getNeighbors(position))
+            {
+                if(Thread.currentThread().isInterrupted())
+                    return;
+                if(!game.isGoal(reply))
+                {
+                    try
+                    {
+                        solver.getMove(reply);
+                    }
+                    catch(CancellationException e)
+                    {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the background search, keeping whatever it already solved
+     */
+    public synchronized void stop()
+    {
+        if(pondering != null)
+        {
+            pondering.cancel(true);
+            pondering = null;
+        }
+    }
+}
@@ -0,0 +1,479 @@
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Wraps any game and measures every call made to it: how many calls each method gets, a histogram of how long they
+ * take and, where the JVM can count them, how many bytes they allocate. Wrap a game, hand the wrapper to a solver and
+ * print report() at the end to see which of the game's methods the search spends its time in.
+ *
+ * Only the Game methods are passed through, so a wrapped game is always searched even if the game is also a SumGame,
+ * RetrogradeGame or Playout.
+ *
+ * @author Jeff DeSain
+ */
+public class ProfiledGame implements Game
+{
+    private static final String USAGE = "Usage: java ProfiledGame [-perft depth] " + Games.USAGE; //Usage statement
+    private static final String[] METHODS = {"getNeighbors", "moves", "isGoal", "isDraw", "setScore", "hashKey",
+            "movesLeft", "encode", "decode", "encodeBytes", "decodeBytes", "update", "gameOver", "getCurrentPosition"};
+                                                         //Methods measured, in report order
+    private static final int GET_NEIGHBORS = 0;
+    private static final int MOVES = 1; //Each step of the iteration over moves
+    private static final int IS_GOAL = 2;
+    private static final int IS_DRAW = 3;
+    private static final int SET_SCORE = 4;
+    private static final int HASH_KEY = 5;
+    private static final int MOVES_LEFT = 6;
+    private static final int ENCODE = 7;
+    private static final int DECODE = 8;
+    private static final int ENCODE_BYTES = 9;
+    private static final int DECODE_BYTES = 10;
+    private static final int UPDATE = 11;
+    private static final int GAME_OVER = 12;
+    private static final int GET_CURRENT_POSITION = 13;
+
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationCounter(); //Null if unsupported
+
+    private final Game game; //The game being measured
+    private final Stats[] stats = new Stats[METHODS.length]; //Measurements for each method
+
+
+    /**
+     * @param game The game being measured
+     */
+    public ProfiledGame(Game game)
+    {
+        this.game = game;
+        for(int i = 0; i < stats.length; i++)
+            stats[i] = new Stats();
+    }
+
+    public static void main(String[] args)
+    {
+        ProfiledGame game = null;
+        int depth = -1;
+
+        try
+        {
+            int first = 0;
+            if(args.length >= 2 && args[0].equals("-perft"))
+            {
+                depth = Integer.parseInt(args[1]);
+                if(depth < 0)
+                    throw new IllegalArgumentException();
+                first = 2;
+            }
+            game = new ProfiledGame(Games.parse(args, first));
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        long start = System.nanoTime();
+        if(depth >= 0)
+        {
+            long count = new Perft(game, 1).count(game.getCurrentPosition(), depth);
+            System.out.println("Perft " + depth + ": " + count);
+        }
+        else
+        {
+            Node move = new Solver(game).getMove();
+            System.out.println("Score: " + move.getScore());
+        }
+        System.out.println("Elapsed: " + (System.nanoTime() - start) / 1000000 + " ms");
+        System.out.println();
+        System.out.print(game.report());
+    }
+
+    /**
+     * Finds the JVM's per thread allocation counter
+     *
+     * @return The counter, or null if this JVM does not have one
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter()
+    {
+        try
+        {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if(bean instanceof com.sun.management.ThreadMXBean)
+            {
+                com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean)bean;
+                if(counter.isThreadAllocatedMemorySupported())
+                {
+                    counter.setThreadAllocatedMemoryEnabled(true);
+                    return counter;
+                }
+            }
+        }
+        catch(UnsupportedOperationException | SecurityException | LinkageError e)
+        {
+            //Measure time only
+        }
+        return null;
+    }
+
+    /**
+     * @return Bytes allocated so far by the calling thread, 0 if the JVM cannot tell
+     */
+    private static long allocated()
+    {
+        return ALLOCATIONS == null ? 0 : ALLOCATIONS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Returns a list of all possible configurations given a particular configuration
+     *
+     * @param n A particular configuration
+     * @return An ArrayList containing all possible configurations resulting from a given configuration
+     */
+    @Override
+    public ArrayList<Node> getNeighbors(Node n)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        ArrayList<Node> neighbors = game.getNeighbors(n);
+        stats[GET_NEIGHBORS].add(System.nanoTime() - start, allocated() - bytes);
+        return neighbors;
+    }
+
+    /**
+     * Returns the configurations reachable in one move, measuring each step of the iteration separately
+     *
+     * @param n A particular configuration
+     * @return The configurations resulting from n
+     */
+    @Override
+    public Iterable<Node> moves(Node n)
+    {
+        return () -> {
+            long bytes = allocated();
+            long start = System.nanoTime();
+            Iterator<Node> moves = game.moves(n).iterator();
+            stats[MOVES].add(System.nanoTime() - start, allocated() - bytes);
+
+            return new Iterator<Node>() {
+                public boolean hasNext()
+                {
+                    return moves.hasNext();
+                }
+
+                public Node next()
+                {
+                    long bytes = allocated();
+                    long start = System.nanoTime();
+                    Node next = moves.next();
+                    stats[MOVES].add(System.nanoTime() - start, allocated() - bytes);
+                    return next;
+                }
+            };
+        };
+    }
+
+    /**
+     * Determines whether a particular configuration is a goal configuration
+     *
+     * @param n A particular configuration
+     * @return True if the configuration is a goal, false otherwise
+     */
+    @Override
+    public boolean isGoal(Node n)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        boolean goal = game.isGoal(n);
+        stats[IS_GOAL].add(System.nanoTime() - start, allocated() - bytes);
+        return goal;
+    }
+
+    /**
+     * Determines whether a configuration can only end in a tie, so the search scores it without looking further
+     *
+     * @param n A particular configuration
+     * @return True if the game can only be a tie
+     */
+    @Override
+    public boolean isDraw(Node n)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        boolean draw = game.isDraw(n);
+        stats[IS_DRAW].add(System.nanoTime() - start, allocated() - bytes);
+        return draw;
+    }
+
+    /**
+     * Sets the score for a node
+     *
+     * @param n The node
+     * @param score 1 if maximizing player, -1 if minimizing player, 0 if tie
+     */
+    @Override
+    public void setScore(Node n, int score)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        game.setScore(n, score);
+        stats[SET_SCORE].add(System.nanoTime() - start, allocated() - bytes);
+    }
+
+    /**
+     * Gets a 64 bit key identifying a configuration
+     *
+     * @param n A particular configuration
+     * @return The configuration's key
+     */
+    @Override
+    public long hashKey(Node n)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        long key = game.hashKey(n);
+        stats[HASH_KEY].add(System.nanoTime() - start, allocated() - bytes);
+        return key;
+    }
+
+    /**
+     * Estimates how hard a configuration is to solve
+     *
+     * @param n A particular configuration
+     * @return The most moves left, or -1 if the game cannot tell
+     */
+    @Override
+    public int movesLeft(Node n)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        int left = game.movesLeft(n);
+        stats[MOVES_LEFT].add(System.nanoTime() - start, allocated() - bytes);
+        return left;
+    }
+
+    /**
+     * @return Number of bits in the wrapped game's codes, 0 if it cannot encode its configurations
+     */
+    @Override
+    public int codeBits()
+    {
+        return game.codeBits();
+    }
+
+    /**
+     * Packs a configuration with the wrapped game's codec
+     *
+     * @param n A particular configuration
+     * @return The configuration's code
+     */
+    @Override
+    public long encode(Node n)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        long code = game.encode(n);
+        stats[ENCODE].add(System.nanoTime() - start, allocated() - bytes);
+        return code;
+    }
+
+    /**
+     * Unpacks a configuration with the wrapped game's codec
+     *
+     * @param code The configuration's code
+     * @return The configuration
+     */
+    @Override
+    public Node decode(long code)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        Node n = game.decode(code);
+        stats[DECODE].add(System.nanoTime() - start, allocated() - bytes);
+        return n;
+    }
+
+    /**
+     * Packs a configuration into bytes with the wrapped game's codec
+     *
+     * @param n A particular configuration
+     * @return The configuration's code
+     */
+    @Override
+    public byte[] encodeBytes(Node n)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        byte[] code = game.encodeBytes(n);
+        stats[ENCODE_BYTES].add(System.nanoTime() - start, allocated() - bytes);
+        return code;
+    }
+
+    /**
+     * Unpacks a configuration from bytes with the wrapped game's codec
+     *
+     * @param code The configuration's code
+     * @return The configuration
+     */
+    @Override
+    public Node decodeBytes(byte[] code)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        Node n = game.decodeBytes(code);
+        stats[DECODE_BYTES].add(System.nanoTime() - start, allocated() - bytes);
+        return n;
+    }
+
+    /**
+     * Updates the game after a move has been made
+     *
+     * @param n The new configuration after a move has been made
+     */
+    @Override
+    public void update(Node n)
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        game.update(n);
+        stats[UPDATE].add(System.nanoTime() - start, allocated() - bytes);
+    }
+
+    /**
+     * Checks if the current game is over
+     *
+     * @return True if the game is over, false otherwise
+     */
+    @Override
+    public boolean gameOver()
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        boolean over = game.gameOver();
+        stats[GAME_OVER].add(System.nanoTime() - start, allocated() - bytes);
+        return over;
+    }
+
+    /**
+     * Getter for the current position
+     *
+     * @return A node containing the current position
+     */
+    @Override
+    public Node getCurrentPosition()
+    {
+        long bytes = allocated();
+        long start = System.nanoTime();
+        Node position = game.getCurrentPosition();
+        stats[GET_CURRENT_POSITION].add(System.nanoTime() - start, allocated() - bytes);
+        return position;
+    }
+
+    /**
+     * Getter for the number of calls to a method
+     *
+     * @param method The method's name, such as isGoal
+     * @return Number of calls, or -1 if the method is not measured
+     */
+    public long getCalls(String method)
+    {
+        int i = Arrays.asList(METHODS).indexOf(method);
+        return i < 0 ? -1 : stats[i].calls.sum();
+    }
+
+    /**
+     * Throws away every measurement so far
+     */
+    public void reset()
+    {
+        for(int i = 0; i < stats.length; i++)
+            stats[i] = new Stats();
+    }
+
+    /**
+     * Describes the measurements as a table, one row per method that was called. Percentiles are the upper end of the
+     * power of two histogram bucket they fall in, while the maximum is the longest call actually measured.
+     *
+     * @return The table
+     */
+    public String report()
+    {
+        StringBuilder answer = new StringBuilder();
+        long totalNanos = 0;
+        for(Stats s : stats)
+            totalNanos += s.nanos.sum();
+
+        answer.append(String.format("%-19s %12s %10s %6s %9s %9s %9s %9s %11s%n", "method", "calls", "total ms",
+                "share", "mean ns", "p50 ns", "p99 ns", "max ns", ALLOCATIONS == null ? "" : "bytes/call"));
+        for(int i = 0; i < METHODS.length; i++)
+        {
+            Stats s = stats[i];
+            long calls = s.calls.sum();
+            if(calls == 0)
+                continue;
+
+            long nanos = s.nanos.sum();
+            answer.append(String.format("%-19s %12d %10.1f %5.1f%% %9d %9d %9d %9d %11s%n", METHODS[i], calls,
+                    nanos / 1e6, totalNanos == 0 ? 0 : 100.0 * nanos / totalNanos, nanos / calls, s.percentile(50),
+                    s.percentile(99), s.longest.get(),
+                    ALLOCATIONS == null ? "" : String.format("%.1f", (double)s.bytes.sum() / calls)));
+        }
+        return answer.toString();
+    }
+
+    /**
+     * @return A string representation of the wrapped game
+     */
+    public String toString()
+    {
+        return game.toString();
+    }
+
+
+    /**
+     * Measurements for one method
+     */
+    private static final class Stats
+    {
+        private final LongAdder calls = new LongAdder(); //Number of calls
+        private final LongAdder nanos = new LongAdder(); //Total time taken
+        private final LongAdder bytes = new LongAdder(); //Total bytes allocated
+        private final AtomicLongArray buckets = new AtomicLongArray(64); //Calls by the bit length of their time
+        private final LongAccumulator longest = new LongAccumulator(Math::max, 0); //Longest time taken by one call
+
+        /**
+         * Records one call
+         *
+         * @param time Nanoseconds it took
+         * @param allocated Bytes it allocated
+         */
+        void add(long time, long allocated)
+        {
+            calls.increment();
+            nanos.add(time);
+            bytes.add(allocated);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(0, time)) & 63);
+            longest.accumulate(time);
+        }
+
+        /**
+         * Finds a percentile of the call times
+         *
+         * @param p The percentile, from 0 to 100
+         * @return The upper end of the bucket holding it, in nanoseconds
+         */
+        long percentile(double p)
+        {
+            long total = calls.sum();
+            long needed = Math.max(1, (long)Math.ceil(p / 100 * total));
+            long seen = 0;
+
+            for(int i = 0; i < 64; i++)
+            {
+                seen += buckets.get(i);
+                if(seen >= needed)
+                    return i == 0 ? 0 : (1L << i) - 1;
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+import java.util.*;
+
+/**
+ * Solver that proves the value of a position with depth-first proof-number search (df-pn). Instead of searching every
+ * move like minimax, df-pn always expands the part of the tree where the fewest positions are left to prove or
+ * disprove the goal, which finds forced wins far sooner. Intermediate results are kept in a table with a fixed
+ * number of entries; when it fills up, the entries that took the least work to compute are thrown away.
+ *
+ * A position is solved in up to two passes: the first tries to prove that the player to move wins, and if that is
+ * disproven the second tries to prove that the opponent wins. A position where both are disproven is a tie.
+ *
+ * @author Jeff DeSain
+ */
+public class ProofNumberSolver
+{
+    private static final String USAGE = "Usage: java ProofNumberSolver [-nodes max_nodes] " + Games.USAGE;
+
+    public static final long INFINITY = Long.MAX_VALUE / 4; //Proof or disproof number of a solved position
+    public static final int DEFAULT_TABLE_SIZE = 1 << 20; //Default number of table entries
+    public static final int WIN = 1; //The player to move wins
+    public static final int TIE = 0; //Neither player can force a win
+    public static final int LOSS = -1; //The player to move loses
+    public static final int UNKNOWN = 2; //The search ran out of nodes
+
+    private static final int PHI = 0; //Index of the proof number in a table entry
+    private static final int DELTA = 1; //Index of the disproof number in a table entry
+    private static final int WORK = 2; //Index of the number of positions expanded to compute an entry
+
+    private Game game; //The game being played
+    private int tableSize; //Entries kept before the table is pruned
+    private long maxNodes; //Positions expanded before giving up
+
+    //Entries for positions where the player trying to win is to move, and where the other player is to move
+    private HashMap<Node, long[]> attackerTable = new HashMap<Node, long[]>();
+    private HashMap<Node, long[]> defenderTable = new HashMap<Node, long[]>();
+
+    private long nodes; //Positions expanded so far
+    private long proofNumber; //Proof number of "the player to move wins" at the root
+    private long disproofNumber; //Disproof number of "the player to move wins" at the root
+    private Node bestMove; //Best move found by the last solve
+    private Node searchRoot; //Root of the search running now
+    private Node provingMove; //Move that reached the goal from searchRoot, null until one is proven
+
+
+    /**
+     * @param game The game being played
+     */
+    public ProofNumberSolver(Game game)
+    {
+        this(game, DEFAULT_TABLE_SIZE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param game The game being played
+     * @param tableSize Number of table entries kept before the table is pruned
+     * @param maxNodes Number of positions expanded before a solve gives up
+     */
+    public ProofNumberSolver(Game game, int tableSize, long maxNodes)
+    {
+        //Pruning keeps the position being stored, so a table of fewer than 2 entries could never be pruned to half
+        if(tableSize < 2)
+            throw new IllegalArgumentException("Need a table of at least 2 entries");
+
+        this.game = game;
+        this.tableSize = tableSize;
+        this.maxNodes = maxNodes;
+    }
+
+    public static void main(String[] args)
+    {
+        Game game = null;
+        long maxNodes = Long.MAX_VALUE;
+        int first = 0;
+
+        try
+        {
+            if(args.length > 1 && args[0].equals("-nodes"))
+            {
+                maxNodes = Long.parseLong(args[1]);
+                first = 2;
+            }
+            game = Games.parse(args, first);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        ProofNumberSolver pns = new ProofNumberSolver(game, DEFAULT_TABLE_SIZE, maxNodes);
+        long start = System.nanoTime();
+        int result = pns.solve();
+        long pnsTime = System.nanoTime() - start;
+
+        System.out.println(game);
+        System.out.println("df-pn:   " + describe(result) + ", proof " + pns.getProofNumber() + ", disproof "
+                + pns.getDisproofNumber() + ", " + pns.getNodeCount() + " nodes, " + pnsTime / 1000000 + " ms");
+        if(pns.getMove() != null)
+            System.out.println("Best move:" + System.lineSeparator() + pns.getMove().getData());
+    }
+
+    /**
+     * Describes a result
+     *
+     * @param result WIN, TIE, LOSS or UNKNOWN
+     * @return The result in words
+     */
+    public static String describe(int result)
+    {
+        switch(result)
+        {
+            case WIN:
+                return "player to move wins";
+            case LOSS:
+                return "player to move loses";
+            case TIE:
+                return "tie";
+            default:
+                return "unknown";
+        }
+    }
+
+    /**
+     * Proves the value of the current position
+     *
+     * @return WIN, TIE or LOSS for the player to move, or UNKNOWN if the node limit was reached
+     */
+    public int solve()
+    {
+        Node root = game.getCurrentPosition();
+        int result;
+
+        nodes = 0;
+        bestMove = null;
+
+        //First pass: can the player to move win?
+        long[] entry = prove(root);
+        proofNumber = entry[PHI];
+        disproofNumber = entry[DELTA];
+        bestMove = entry[PHI] == 0 ? provingMove : pickMove(root, attackerTable);
+
+        if(entry[PHI] == 0)
+            result = WIN;
+        else if(entry[DELTA] != 0)
+            result = UNKNOWN;
+        else
+        {
+            //Second pass: can the opponent win? The player to move is now the one defending
+            clear();
+            entry = disprove(root);
+            if(entry[PHI] == 0)
+            {
+                result = TIE;
+                bestMove = provingMove;
+            }
+            else if(entry[DELTA] == 0)
+                result = LOSS;
+            else
+                result = UNKNOWN;
+        }
+
+        clear();
+        return result;
+    }
+
+    /**
+     * Getter for the best move
+     *
+     * @return The winning or tying move found by the last solve, or the most promising move if it found neither.
+     * Null if the position is already over.
+     */
+    public Node getMove()
+    {
+        return bestMove;
+    }
+
+    /**
+     * @return Number of positions expanded by the last solve
+     */
+    public long getNodeCount()
+    {
+        return nodes;
+    }
+
+    /**
+     * @return Proof number of "the player to move wins" at the root after the last solve, 0 if proven
+     */
+    public long getProofNumber()
+    {
+        return proofNumber;
+    }
+
+    /**
+     * @return Disproof number of "the player to move wins" at the root after the last solve, 0 if disproven
+     */
+    public long getDisproofNumber()
+    {
+        return disproofNumber;
+    }
+
+    /**
+     * Runs df-pn from a position where the player to move is trying to win
+     *
+     * @param root The position
+     * @return The root's table entry
+     */
+    private long[] prove(Node root)
+    {
+        return search(root, true);
+    }
+
+    /**
+     * Runs df-pn from a position where the player to move is trying not to lose
+     *
+     * @param root The position
+     * @return The root's table entry
+     */
+    private long[] disprove(Node root)
+    {
+        return search(root, false);
+    }
+
+    /**
+     * Searches from the root with unbounded thresholds, raising them until the root is solved or the node limit is
+     * reached
+     *
+     * @param root The position
+     * @param attacker True if the player to move at the root is the one trying to win
+     * @return The root's table entry
+     */
+    private long[] search(Node root, boolean attacker)
+    {
+        searchRoot = root;
+        provingMove = null;
+
+        long[] entry = lookup(root, attacker);
+        while(entry[PHI] != 0 && entry[DELTA] != 0 && nodes < maxNodes)
+        {
+            mid(root, attacker, INFINITY, INFINITY);
+            entry = lookup(root, attacker);
+        }
+        return entry;
+    }
+
+    /**
+     * Multiple iterative deepening: expands a position until its proof or disproof number reaches its threshold.
+     * Numbers are from the point of view of the player to move, so phi is the number of positions left to show they
+     * reach their goal and delta the number left to show they do not.
+     *
+     * @param n The position
+     * @param attacker True if the player to move is the one trying to win
+     * @param phiLimit Threshold for phi
+     * @param deltaLimit Threshold for delta
+     */
+    private void mid(Node n, boolean attacker, long phiLimit, long deltaLimit)
+    {
+        long[] entry = lookup(n, attacker);
+        if(entry[PHI] == 0 || entry[DELTA] == 0)
+            return;
+
+        long startNodes = nodes++;
+        ArrayList<Node> children = game.getNeighbors(n);
+
+        if(children.isEmpty())
+        {
+            //No moves left is a tie, which only the defending player is happy with
+            entry[PHI] = attacker ? INFINITY : 0;
+            entry[DELTA] = attacker ? 0 : INFINITY;
+            store(n, attacker, entry);
+            return;
+        }
+
+        long[][] childEntries = new long[children.size()][];
+        int best;
+        while(true)
+        {
+            long phi = INFINITY;
+            long delta = 0;
+            long secondDelta = INFINITY;
+            best = 0;
+
+            for(int i = 0; i < children.size(); i++)
+            {
+                childEntries[i] = lookup(children.get(i), !attacker);
+                long childDelta = childEntries[i][DELTA];
+
+                if(childDelta < phi)
+                {
+                    secondDelta = phi;
+                    phi = childDelta;
+                    best = i;
+                }
+                else if(childDelta < secondDelta)
+                    secondDelta = childDelta;
+
+                delta = Math.min(INFINITY, delta + childEntries[i][PHI]);
+            }
+
+            entry[PHI] = phi;
+            entry[DELTA] = delta;
+            if(phi >= phiLimit || delta >= deltaLimit || nodes >= maxNodes)
+                break;
+
+            long childPhiLimit = Math.min(INFINITY, deltaLimit - delta + childEntries[best][PHI]);
+            long childDeltaLimit = Math.min(phiLimit, secondDelta == INFINITY ? INFINITY : secondDelta + 1);
+            mid(children.get(best), !attacker, childPhiLimit, childDeltaLimit);
+        }
+
+        //Pruning may drop the root's children, so the move that proves the root is kept as soon as it is found
+        if(n == searchRoot && entry[PHI] == 0)
+            provingMove = children.get(best);
+
+        entry[WORK] += nodes - startNodes;
+        store(n, attacker, entry);
+    }
+
+    /**
+     * Finds the table entry for a position, or makes a new one
+     *
+     * @param n The position
+     * @param attacker True if the player to move is the one trying to win
+     * @return A copy of the entry
+     */
+    private long[] lookup(Node n, boolean attacker)
+    {
+        long[] entry = (attacker ? attackerTable : defenderTable).get(n);
+        if(entry != null)
+            return entry.clone();
+
+        entry = new long[]{1, 1, 0};
+        if(game.isGoal(n))
+        {
+            //setScore gives the score for the player to move, so a positive score means they won
+            game.setScore(n, 1);
+            boolean reached = n.getScore() > 0 || !attacker && n.getScore() == 0;
+            entry[PHI] = reached ? 0 : INFINITY;
+            entry[DELTA] = reached ? INFINITY : 0;
+        }
+        return entry;
+    }
+
+    /**
+     * Saves a table entry, pruning the table if it is full
+     *
+     * @param n The position
+     * @param attacker True if the player to move is the one trying to win
+     * @param entry The entry
+     */
+    private void store(Node n, boolean attacker, long[] entry)
+    {
+        (attacker ? attackerTable : defenderTable).put(n, entry);
+
+        if(attackerTable.size() + defenderTable.size() > tableSize)
+        {
+            //Drop the cheapest entries until half the table is free, unsolved ones before solved ones
+            for(long work = 1; attackerTable.size() + defenderTable.size() > tableSize / 2; work *= 2)
+            {
+                prune(attackerTable, work, n);
+                prune(defenderTable, work, n);
+            }
+        }
+    }
+
+    /**
+     * Removes entries that took little work to compute
+     *
+     * @param table The table
+     * @param work Entries that took at most this many expansions are removed
+     * @param keep A position that must not be removed
+     */
+    private static void prune(HashMap<Node, long[]> table, long work, Node keep)
+    {
+        Iterator<Map.Entry<Node, long[]>> it = table.entrySet().iterator();
+        while(it.hasNext())
+        {
+            Map.Entry<Node, long[]> e = it.next();
+            long[] entry = e.getValue();
+            boolean solved = entry[PHI] == 0 || entry[DELTA] == 0;
+
+            if(entry[WORK] <= (solved ? work / 4 : work) && !e.getKey().equals(keep))
+                it.remove();
+        }
+    }
+
+    /**
+     * Chooses the move with the smallest delta, the most promising one when the root was not proven
+     *
+     * @param root The position moved from
+     * @param table The table the search filled
+     * @return The chosen move, null if there are none
+     */
+    private Node pickMove(Node root, HashMap<Node, long[]> table)
+    {
+        if(game.isGoal(root))
+            return null;
+
+        Node best = null;
+        long bestDelta = Long.MAX_VALUE;
+        boolean attacker = table == attackerTable;
+
+        for(Node child : game.getNeighbors(root))
+        {
+            long delta = lookup(child, !attacker)[DELTA];
+            if(delta < bestDelta)
+            {
+                bestDelta = delta;
+                best = child;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Empties both tables
+     */
+    private void clear()
+    {
+        attackerTable.clear();
+        defenderTable.clear();
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Optional interface for games small enough to solve every configuration at once. The configurations are numbered
+ * from 0 to stateCount() - 1, and the game can undo moves as well as make them. RetrogradeSolver uses it to work
+ * backwards from the finished games, and RetrogradeTable uses the numbering to look scores up.
+ *
+ * @author Jeff DeSain
+ */
+public interface RetrogradeGame extends Game
+{
+    /**
+     * @return Number of configuration indexes, including ones that are not valid configurations
+     */
+    long stateCount();
+
+    /**
+     * Gets the configuration with a given index
+     *
+     * @param index A number from 0 to stateCount() - 1
+     * @return The configuration, or null if no valid configuration has this index
+     */
+    Node position(long index);
+
+    /**
+     * Gets the index of a configuration
+     *
+     * @param n A particular configuration
+     * @return Its index, or -1 if it is outside the numbered configurations
+     */
+    long index(Node n);
+
+    /**
+     * Returns every configuration that has n among its moves, each one once
+     *
+     * @param n A particular configuration
+     * @return The configurations one move before n
+     */
+    Iterable<Node> predecessors(Node n);
+}
@@ -0,0 +1,342 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Strongly solves a game by backward induction instead of searching it. Every finished configuration is scored
+ * first; those scores form the frontier. Each sweep then looks at the configurations one move before the frontier: a
+ * move into a lost configuration wins, and a configuration whose moves have all been scored without finding a win is
+ * a tie if any move ties and a loss otherwise. The newly scored configurations are the next frontier. Sweeps split
+ * their frontier between threads, which claim configurations with compare and swap on the packed results.
+ *
+ * @author Jeff DeSain
+ */
+public class RetrogradeSolver
+{
+    private static final String USAGE = "Usage: java RetrogradeSolver [-threads n] [-save file | -load file] "
+            + Games.USAGE; //Usage statement
+    private static final int CHUNK = 4096; //Configuration indexes per task when scoring finished configurations
+
+    private RetrogradeGame game; //The game being solved
+    private int threads; //Number of threads sweeping at once
+
+    private AtomicLongArray results; //Two bits per configuration index, see RetrogradeTable
+    private AtomicIntegerArray remaining; //Moves of each configuration that have not been scored yet
+    private int sweeps; //Frontiers processed by the last solve
+
+
+    /**
+     * @param game The game being solved
+     * @param threads Number of threads sweeping at once
+     */
+    public RetrogradeSolver(RetrogradeGame game, int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("Need at least one thread");
+        if(game.stateCount() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many configurations: " + game.stateCount());
+
+        this.game = game;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args)
+    {
+        Game game = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String save = null;
+        String load = null;
+        int first = 0;
+
+        try
+        {
+            while(first + 1 < args.length && args[first].startsWith("-"))
+            {
+                if(args[first].equals("-threads"))
+                    threads = Integer.parseInt(args[first + 1]);
+                else if(args[first].equals("-save"))
+                    save = args[first + 1];
+                else if(args[first].equals("-load"))
+                    load = args[first + 1];
+                else
+                    throw new IllegalArgumentException();
+                first += 2;
+            }
+            game = Games.parse(args, first);
+
+            if(!(game instanceof RetrogradeGame) || save != null && load != null)
+                throw new IllegalArgumentException();
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        RetrogradeTable table = null;
+        long start = System.nanoTime();
+        try
+        {
+            if(load != null)
+                table = RetrogradeTable.load((RetrogradeGame)game, load);
+            else
+                table = new RetrogradeSolver((RetrogradeGame)game, threads).solve();
+
+            if(save != null)
+                table.save(save);
+        }
+        catch(IllegalArgumentException | IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long states = ((RetrogradeGame)game).stateCount();
+        System.out.println(game);
+        System.out.printf("%d configuration indexes %s in %d ms, %.0f per second%n", states,
+                load != null ? "loaded" : "solved on " + threads + " threads", elapsed / 1000000,
+                states * 1e9 / elapsed);
+        System.out.println("Wins: " + table.count(RetrogradeTable.WIN) + "  Losses: " + table.count(RetrogradeTable.LOSS)
+                + "  Ties: " + table.count(RetrogradeTable.TIE) + "  Invalid: " + table.count(RetrogradeTable.UNKNOWN));
+
+        if(!game.gameOver())
+        {
+            Node move = new Solver(game, table).getMove();
+            System.out.println("Score: " + move.getScore());
+            System.out.println("Best move:" + System.lineSeparator() + move.getData());
+        }
+    }
+
+    /**
+     * Scores every configuration of the game
+     *
+     * @return The scores
+     */
+    public RetrogradeTable solve()
+    {
+        long states = game.stateCount();
+        results = new AtomicLongArray((int)((states + 31) >>> 5));
+        remaining = new AtomicIntegerArray((int)states);
+        sweeps = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Callable<long[]>> tasks = new ArrayList<Callable<long[]>>();
+            for(long from = 0; from < states; from += CHUNK)
+            {
+                long start = from;
+                tasks.add(() -> scoreFinished(start, Math.min(start + CHUNK, states)));
+            }
+            long[] frontier = join(executor.invokeAll(tasks));
+
+            while(frontier.length > 0)
+            {
+                long[] current = frontier;
+                int size = (current.length + threads - 1) / threads;
+
+                tasks.clear();
+                for(int from = 0; from < current.length; from += size)
+                {
+                    int start = from;
+                    tasks.add(() -> sweep(current, start, Math.min(start + size, current.length)));
+                }
+                frontier = join(executor.invokeAll(tasks));
+                sweeps++;
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Solve interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        long[] packed = new long[results.length()];
+        for(int i = 0; i < packed.length; i++)
+            packed[i] = results.get(i);
+
+        remaining = null;
+        results = null;
+        return new RetrogradeTable(game, packed);
+    }
+
+    /**
+     * @return Number of frontiers processed by the last solve
+     */
+    public int getSweeps()
+    {
+        return sweeps;
+    }
+
+    /**
+     * Scores the finished configurations in a range of indexes and counts the moves of the others
+     *
+     * @param from First index
+     * @param to One past the last index
+     * @return The indexes that were scored
+     */
+    private long[] scoreFinished(long from, long to)
+    {
+        long[] scored = new long[16];
+        int count = 0;
+
+        for(long i = from; i < to; i++)
+        {
+            Node n = game.position(i);
+            if(n == null)
+                continue;
+
+            int result;
+            if(game.isGoal(n))
+            {
+                //setScore gives the score for the player to move
+                game.setScore(n, 1);
+                result = n.getScore() > 0 ? RetrogradeTable.WIN : n.getScore() < 0 ? RetrogradeTable.LOSS
+                        : RetrogradeTable.TIE;
+            }
+            else
+            {
+                int moves = game.getNeighbors(n).size();
+
+                if(moves > 0)
+                {
+                    remaining.set((int)i, moves);
+                    continue;
+                }
+                result = RetrogradeTable.TIE;
+            }
+
+            claim(i, result);
+            if(count == scored.length)
+                scored = Arrays.copyOf(scored, count * 2);
+            scored[count++] = i;
+        }
+
+        return Arrays.copyOf(scored, count);
+    }
+
+    /**
+     * Scores what can be scored among the configurations one move before part of the frontier
+     *
+     * @param frontier Indexes scored by the last sweep
+     * @param from First position in frontier
+     * @param to One past the last position
+     * @return The indexes that were scored
+     */
+    private long[] sweep(long[] frontier, int from, int to)
+    {
+        long[] scored = new long[16];
+        int count = 0;
+
+        for(int f = from; f < to; f++)
+        {
+            boolean lost = result(frontier[f]) == RetrogradeTable.LOSS;
+
+            for(Node before : game.predecessors(game.position(frontier[f])))
+            {
+                long i = game.index(before);
+                if(result(i) != RetrogradeTable.UNKNOWN)
+                    continue;
+
+                int result;
+                if(lost)
+                    result = RetrogradeTable.WIN;
+                else if(remaining.decrementAndGet((int)i) == 0)
+                    result = allScored(before);
+                else
+                    continue;
+
+                if(claim(i, result))
+                {
+                    if(count == scored.length)
+                        scored = Arrays.copyOf(scored, count * 2);
+                    scored[count++] = i;
+                }
+            }
+        }
+
+        return Arrays.copyOf(scored, count);
+    }
+
+    /**
+     * Scores a configuration none of whose moves lead to a lost configuration, once all of them are scored
+     *
+     * @param n The configuration
+     * @return TIE if any move ties, LOSS otherwise
+     */
+    private int allScored(Node n)
+    {
+        for(Node next : game.getNeighbors(n))
+        {
+            if(result(game.index(next)) == RetrogradeTable.TIE)
+                return RetrogradeTable.TIE;
+        }
+        return RetrogradeTable.LOSS;
+    }
+
+    /**
+     * Gets the result of a configuration index
+     *
+     * @param index The index
+     * @return UNKNOWN, WIN, LOSS or TIE
+     */
+    private int result(long index)
+    {
+        return (int)(results.get((int)(index >>> 5)) >>> ((index & 31) * 2)) & 3;
+    }
+
+    /**
+     * Sets the result of a configuration index unless another thread already has
+     *
+     * @param index The index
+     * @param result WIN, LOSS or TIE
+     * @return True if this call set the result
+     */
+    private boolean claim(long index, int result)
+    {
+        int word = (int)(index >>> 5);
+        int shift = (int)(index & 31) * 2;
+
+        while(true)
+        {
+            long old = results.get(word);
+            if((old >>> shift & 3) != RetrogradeTable.UNKNOWN)
+                return false;
+            if(results.compareAndSet(word, old, old | (long)result << shift))
+                return true;
+        }
+    }
+
+    /**
+     * Puts the indexes found by several tasks into one frontier
+     *
+     * @param parts The tasks' results
+     * @return Every index they scored
+     */
+    private static long[] join(List<Future<long[]>> parts) throws InterruptedException, ExecutionException
+    {
+        int total = 0;
+        for(Future<long[]> part : parts)
+            total += part.get().length;
+
+        long[] all = new long[total];
+        int index = 0;
+        for(Future<long[]> part : parts)
+        {
+            long[] indexes = part.get();
+            System.arraycopy(indexes, 0, all, index, indexes.length);
+            index += indexes.length;
+        }
+        return all;
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.*;
+
+/**
+ * The score of every configuration of a RetrogradeGame, as found by RetrogradeSolver. Each score takes two bits, so a
+ * table can be saved once and loaded again at play time. Solver looks positions up here instead of searching them.
+ *
+ * @author Jeff DeSain
+ */
+public class RetrogradeTable
+{
+    static final int UNKNOWN = 0; //Not a valid configuration, or not solved
+    static final int WIN = 1; //The player to move wins
+    static final int LOSS = 2; //The player to move loses
+    static final int TIE = 3; //Neither player can force a win
+
+    private final RetrogradeGame game; //The game the table is for
+    private final long[] results; //Two bits per configuration index
+    private final long states; //Number of configuration indexes
+
+
+    /**
+     * @param game The game the table is for
+     * @param results Two bits per configuration index, 32 indexes per long
+     */
+    RetrogradeTable(RetrogradeGame game, long[] results)
+    {
+        this.game = game;
+        this.results = results;
+        this.states = game.stateCount();
+    }
+
+    /**
+     * Finds the score of a configuration
+     *
+     * @param n A particular configuration
+     * @return 1 if the player to move wins, -1 if they lose, 0 if tie, or TranspositionTable.MISS if n is not in the
+     * table
+     */
+    public int value(Node n)
+    {
+        long index = game.index(n);
+        if(index < 0 || index >= states)
+            return TranspositionTable.MISS;
+
+        switch(result(index))
+        {
+            case WIN:
+                return 1;
+            case LOSS:
+                return -1;
+            case TIE:
+                return 0;
+            default:
+                return TranspositionTable.MISS;
+        }
+    }
+
+    /**
+     * Gets the raw result of a configuration index
+     *
+     * @param index The index
+     * @return UNKNOWN, WIN, LOSS or TIE
+     */
+    int result(long index)
+    {
+        return (int)(results[(int)(index >>> 5)] >>> ((index & 31) * 2)) & 3;
+    }
+
+    /**
+     * Counts the configurations with a result
+     *
+     * @param result UNKNOWN, WIN, LOSS or TIE
+     * @return Number of configuration indexes with that result
+     */
+    public long count(int result)
+    {
+        long count = 0;
+        for(long i = 0; i < states; i++)
+        {
+            if(result(i) == result)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the table to a file
+     *
+     * @param fileName The file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(String fileName) throws IOException
+    {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName))))
+        {
+            out.writeLong(states);
+            for(long word : results)
+                out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a table written by save
+     *
+     * @param game The game the table is for
+     * @param fileName The file
+     * @return The table
+     * @throws IOException If the file cannot be read or was written for a different game
+     */
+    public static RetrogradeTable load(RetrogradeGame game, String fileName) throws IOException
+    {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName))))
+        {
+            if(in.readLong() != game.stateCount())
+                throw new IOException(fileName + " was solved for a different game");
+
+            long[] results = new long[(int)((game.stateCount() + 31) >>> 5)];
+            for(int i = 0; i < results.length; i++)
+                results[i] = in.readLong();
+            return new RetrogradeTable(game, results);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Worker process for DistributedSolver. Scores the positions it is sent with its own Solver and cache, so a solve
+ * can use the memory and cores of several JVMs. Each connection is handled on its own virtual thread and every
+ * position of the same game shares one cache for the life of the process.
+ *
+ * Requests, one per line:
+ *   SOLVE alpha beta moves game   replies OK score configurations_searched
+ *   CANCEL                        stops the search in progress, which replies CANCELLED instead
+ *   QUIT                          closes the connection
+ *
+ * The game is written as for Games.parse. For connect3 and connectk the position can be reached by dropping pieces
+ * into moves, a comma separated list of columns played from the empty board, or - for the empty board itself. For any
+ * game that can encode its configurations, moves can instead be # followed by the position's code from Game.encode in
+ * hexadecimal. The score is for the player to move, searched with the window alpha to beta: it is exact if it falls
+ * inside the window and a bound otherwise, see Solver.solve. Every SOLVE gets exactly one reply, and another SOLVE
+ * is only accepted once it has been written. Closing the connection also stops the search. Bad requests are answered
+ * with ERR followed by a message.
+ *
+ * Workers only listen on the loopback address unless given another one to bind to, since anyone who can connect can
+ * make them search. Coordinators on other machines need the worker bound to an address they can reach.
+ *
+ * @author Jeff DeSain
+ */
+public class SolveWorker
+{
+    private static final String USAGE = "Usage: java SolveWorker [-bind address] [port [table]]"; //Usage statement
+    private static final String DEFAULT_TABLE = "64"; //Each game's cache when none is given, 64 megabytes on heap
+
+    private final String table; //Description of each game's cache, see TranspositionTable.create
+    private final Map<String, TranspositionTable> caches = new ConcurrentHashMap<String, TranspositionTable>();
+                                                         //Cache of each game, keyed by the game's description
+    private final ExecutorService searches = VirtualThreads.newExecutor(); //Runs searches apart from their readers
+
+
+    /**
+     * @param table Description of each game's cache, see TranspositionTable.create
+     */
+    public SolveWorker(String table)
+    {
+        TranspositionTable.create(table);
+        this.table = table;
+    }
+
+    public static void main(String[] args)
+    {
+        int port = 0;
+        InetAddress address = InetAddress.getLoopbackAddress();
+        SolveWorker worker = null;
+        int first = 0;
+
+        try
+        {
+            if(args.length >= 2 && args[0].equals("-bind"))
+            {
+                address = InetAddress.getByName(args[1]);
+                first = 2;
+            }
+            if(args.length - first > 2)
+                throw new IllegalArgumentException();
+            if(args.length - first >= 1)
+                port = Integer.parseInt(args[first]);
+            worker = new SolveWorker(args.length - first == 2 ? args[first + 1] : DEFAULT_TABLE);
+        }
+        catch(IllegalArgumentException | UnknownHostException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        try
+        {
+            worker.serve(address, port);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not listen on port " + port + ": " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Accepts connections until the process is stopped. The first line printed gives the port, so a coordinator
+     * that started the worker on port 0 can find it.
+     *
+     * @param address The address to listen on, such as the loopback address for coordinators on this machine only
+     * or the wildcard address for any machine
+     * @param port The port to listen on, 0 for any free port
+     * @throws IOException If the server socket cannot be opened
+     */
+    public void serve(InetAddress address, int port) throws IOException
+    {
+        ExecutorService executor = VirtualThreads.newExecutor();
+
+        try(ServerSocket server = new ServerSocket(port, 50, address))
+        {
+            System.out.println("Listening on port " + server.getLocalPort());
+            System.out.flush();
+            while(true)
+            {
+                Socket client = server.accept();
+                executor.execute(() -> handle(client));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            searches.shutdownNow();
+        }
+    }
+
+    /**
+     * Answers the requests on one connection. Searches run on their own thread, so a CANCEL or the connection
+     * closing can interrupt them.
+     *
+     * @param client The connection
+     */
+    private void handle(Socket client)
+    {
+        Request current = null; //The last SOLVE, busy until its reply has been written
+
+        try(Socket socket = client;
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true))
+        {
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                line = line.trim();
+                if(line.equals("QUIT"))
+                    break;
+                if(line.isEmpty())
+                    continue;
+
+                if(line.equals("CANCEL"))
+                {
+                    if(current != null)
+                        current.cancel();
+                }
+                else if(current != null && !current.done)
+                {
+                    reply(out, "ERR Already searching");
+                }
+                else
+                {
+                    current = new Request(line, out);
+                    searches.execute(current);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            //Connection dropped, nothing to answer
+        }
+        finally
+        {
+            if(current != null)
+                current.cancel();
+        }
+    }
+
+    /**
+     * Writes one reply. Replies come from search threads, so writes are serialized.
+     *
+     * @param out The connection's writer
+     * @param reply The reply line
+     */
+    private static void reply(PrintWriter out, String reply)
+    {
+        synchronized(out)
+        {
+            out.println(reply);
+        }
+    }
+
+    /**
+     * Answers a single request
+     *
+     * @param request The request line
+     * @return The reply line
+     */
+    String answer(String request)
+    {
+        String[] words = request.split("\\s+");
+        try
+        {
+            if(!words[0].equals("SOLVE") || words.length < 5)
+                throw new IllegalArgumentException("Unknown request");
+
+            int alpha = Integer.parseInt(words[1]);
+            int beta = Integer.parseInt(words[2]);
+            Game game = Games.parse(words, 4);
+            String name = String.join(" ", Arrays.copyOfRange(words, 4, words.length));
+            Node position = words[3].startsWith("#") ? game.decode(Long.parseUnsignedLong(words[3].substring(1), 16))
+                    : DistributedSolver.replay(game, DistributedSolver.parseMoves(words[3]));
+
+            TranspositionTable cache = caches.computeIfAbsent(name, key -> TranspositionTable.create(table));
+            Solver solver = new Solver(game, cache);
+            solver.setMode(Solver.PVS);
+            int score = solver.solve(position, alpha, beta);
+            return "OK " + score + " " + solver.getNodeCount();
+        }
+        catch(CancellationException e)
+        {
+            return "CANCELLED";
+        }
+        catch(IllegalArgumentException | UnsupportedOperationException e)
+        {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    /**
+     * One SOLVE on a connection. It gets exactly one reply: from the search once the search has started, or from
+     * the CANCEL that stops it before then, in which case the search never runs.
+     */
+    private final class Request implements Runnable
+    {
+        private final String line; //The request line
+        private final PrintWriter out; //The connection's writer
+        private boolean claimed; //True once the search or a CANCEL is going to write the reply
+        private Thread searcher; //Thread searching, null before the search starts and once it has an answer
+        private volatile boolean done; //True once the reply has been written
+
+        /**
+         * @param line The request line
+         * @param out The connection's writer
+         */
+        Request(String line, PrintWriter out)
+        {
+            this.line = line;
+            this.out = out;
+        }
+
+        /**
+         * Searches and replies, unless a CANCEL got to the request first
+         */
+        @Override
+        public void run()
+        {
+            synchronized(this)
+            {
+                if(claimed)
+                    return;
+                claimed = true;
+                searcher = Thread.currentThread();
+            }
+
+            String answer = answer(line);
+            synchronized(this)
+            {
+                //A CANCEL that comes once the answer is known must not interrupt the reply and close the socket
+                searcher = null;
+                Thread.interrupted();
+            }
+
+            finish(answer);
+        }
+
+        /**
+         * Stops the search if it is running, or replies CANCELLED for it if it has not started. Does nothing once
+         * the search has its answer.
+         */
+        void cancel()
+        {
+            synchronized(this)
+            {
+                if(claimed)
+                {
+                    if(searcher != null)
+                        searcher.interrupt();
+                    return;
+                }
+                claimed = true;
+            }
+
+            finish("CANCELLED");
+        }
+
+        /**
+         * Writes the reply. The request is marked done while holding the writer, so a client that has read the
+         * reply and sends the next SOLVE always finds it done, and no later reply can get ahead of this one.
+         *
+         * @param reply The reply line
+         */
+        private void finish(String reply)
+        {
+            synchronized(out)
+            {
+                done = true;
+                out.println(reply);
+            }
+        }
+    }
+}
@@ -1,20 +1,137 @@
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
- * Solver that uses the minimax algorithm to find the best move for a game
+ * Solver that uses the minimax algorithm to find the best move for a game. A search only uses local state and the
+ * cache, so one solver can be used by many threads at once as long as the game's search methods do not modify the
+ * game.
+ *
+ * Since every score is a win, tie or loss, most of a search only has to answer whether a move is at least as good as
+ * one already found. Besides the full window search, setMode selects one of two null window searches that answer
+ * exactly that question, storing bounds in the cache where the answer is not exact:
+ *   PVS    principal variation search, the first move gets a full window and the others a null window, searched
+ *          again only if they turn out better
+ *   MTDF   MTD(f), the score is narrowed down by null window searches alone, relying on the cache between them
  *
  * @author Jeff DeSain
  */
 public class Solver
 {
+    public static final int FULL_WINDOW = 0; //Search every position with the full window
+    public static final int PVS = 1; //Principal variation search
+    public static final int MTDF = 2; //MTD(f)
+    private static final String USAGE = "Usage: java Solver [-mode full|pvs|mtdf|all] " + Games.USAGE; //Usage statement
+
     private Game game; //The game being played
+    private TranspositionTable cache; //Solved scores, from the point of view of the player to move
+    private final LongAdder nodes = new LongAdder(); //Number of configurations searched
+    private final SumSolver sums; //Scores configurations without searching, null unless the game is a SumGame
+    private final Oracle oracle; //Scores configurations by a formula, null unless the game is an Oracle
+    private final RetrogradeTable solved; //Score of every configuration, null if the game has not been solved
+    private volatile int mode = FULL_WINDOW; //How getMove searches
+    private volatile boolean stopped; //True once stop is called, so every search stops
 
     /**
      * @param game The game being played
      */
     public Solver(Game game)
+    {
+        this(game, new UnboundedTable());
+    }
+
+    /**
+     * @param game The game being played
+     * @param cache Scores of already solved configurations. May be shared between solvers of the same game.
+     */
+    public Solver(Game game, TranspositionTable cache)
+    {
+        this(game, cache, null);
+    }
+
+    /**
+     * @param game The game being played
+     * @param solved The score of every configuration, found ahead of time by RetrogradeSolver
+     */
+    public Solver(Game game, RetrogradeTable solved)
+    {
+        this(game, new UnboundedTable(), solved);
+    }
+
+    /**
+     * @param game The game being played
+     * @param cache Scores of already solved configurations. May be shared between solvers of the same game.
+     * @param solved The score of every configuration, found ahead of time by RetrogradeSolver, or null
+     */
+    public Solver(Game game, TranspositionTable cache, RetrogradeTable solved)
     {
         this.game = game;
+        this.cache = cache;
+        this.sums = game instanceof SumGame ? new SumSolver((SumGame)game) : null;
+        this.oracle = game instanceof Oracle ? (Oracle)game : null;
+        this.solved = solved;
+    }
+
+    public static void main(String[] args)
+    {
+        Game game = null;
+        String mode = "all";
+        int first = 0;
+
+        try
+        {
+            if(args.length >= 2 && args[0].equals("-mode"))
+            {
+                mode = args[1];
+                if(!Arrays.asList("full", "pvs", "mtdf", "all").contains(mode))
+                    throw new IllegalArgumentException();
+                first = 2;
+            }
+            game = Games.parse(args, first);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        String[] names = {"full", "pvs", "mtdf"};
+        System.out.println(game);
+        for(int i = 0; i < names.length; i++)
+        {
+            if(mode.equals("all") || mode.equals(names[i]))
+            {
+                Solver solver = new Solver(game);
+                solver.setMode(i);
+
+                long start = System.nanoTime();
+                Node move = solver.getMove();
+                long elapsed = System.nanoTime() - start;
+
+                System.out.printf("%-5s score %2d  %10d positions  %10d cached  %6d ms%n", names[i], move.getScore(),
+                        solver.getNodeCount(), solver.getCache().size(), elapsed / 1000000);
+            }
+        }
+    }
+
+    /**
+     * Chooses how getMove searches
+     *
+     * @param mode FULL_WINDOW, PVS or MTDF
+     */
+    public void setMode(int mode)
+    {
+        if(mode < FULL_WINDOW || mode > MTDF)
+            throw new IllegalArgumentException("Unknown search mode " + mode);
+        this.mode = mode;
+    }
+
+    /**
+     * @return FULL_WINDOW, PVS or MTDF
+     */
+    public int getMode()
+    {
+        return mode;
     }
 
     /**
@@ -24,7 +141,68 @@ public class Solver
      */
     public Node getMove()
     {
-        return miniMax(game.getCurrentPosition(), true);
+        cache.newSearch();
+        return getMove(game.getCurrentPosition());
+    }
+
+    /**
+     * Gets the best move from any configuration of the game. The search stops with a CancellationException if the
+     * calling thread is interrupted or stop is called; everything solved up to then stays in the cache.
+     *
+     * @param n The configuration to move from
+     * @return A node containing the configuration of the best move
+     */
+    public Node getMove(Node n)
+    {
+        int current = mode;
+        return current == FULL_WINDOW ? miniMax(n, true, new long[1]) : nullWindowRoot(n, current, new long[1]);
+    }
+
+    /**
+     * Scores a configuration with an alpha-beta search inside a window, for callers that already know a bound on the
+     * score they need, such as a move that has to beat one found elsewhere. Stops with a CancellationException if
+     * the calling thread is interrupted or stop is called.
+     *
+     * @param n The configuration
+     * @param alpha Score the player to move already has elsewhere, -1 for none
+     * @param beta Score the opponent already has elsewhere, 1 for none
+     * @return The exact score for the player to move if it is inside the window, otherwise a bound on the side the
+     * window was missed
+     */
+    public int solve(Node n, int alpha, int beta)
+    {
+        if(alpha < -1 || beta > 1 || alpha >= beta)
+            throw new IllegalArgumentException("Invalid window " + alpha + " " + beta);
+        return alphaBeta(n, alpha, beta, mode, new long[1]);
+    }
+
+    /**
+     * Stops every search running on this solver, and any started later, with a CancellationException. Unlike an
+     * interrupt it is aimed at the solver rather than a thread, so it can never reach a later task on a pooled thread.
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    /**
+     * Getter for the cache
+     *
+     * @return The transposition table holding solved scores
+     */
+    public TranspositionTable getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Getter for the number of configurations searched
+     *
+     * @return Number of configurations searched by all calls to getMove so far
+     */
+    public long getNodeCount()
+    {
+        return nodes.sum();
     }
 
     /**
@@ -32,15 +210,21 @@ public class Solver
      *
      * @param n The starting node
      * @param max True if the maximizing player, false if the minimizing player
+     * @param searched Counts the configurations searched
      * @return The node containing the best move according to the minimax algorithm
      */
-    private Node miniMax(Node n, boolean max)
+    private Node miniMax(Node n, boolean max, long[] searched)
     {
         Node bestPosition = null; //The best move
         int bestValue; //The score of the best move
-        ArrayList<Node> neighbors; //All possible moves after a given move
+        Iterator<Node> neighbors; //All possible moves after a given move
         int val; //The score of a particular move
-        TreeSet<Integer> visitedConfigs = new TreeSet<Integer>(); //Ensures each configuration is visited at most once
+        HashSet<Node> visitedConfigs = new HashSet<Node>(); //Ensures each configuration is visited at most once
+
+        nodes.increment();
+        searched[0]++;
+        if(stopped || Thread.currentThread().isInterrupted())
+            throw new CancellationException("Search interrupted");
 
         //Check if the game is over
         if(game.isGoal(n))
@@ -55,25 +239,23 @@ public class Solver
         else if(max)
         {
             bestValue = Integer.MIN_VALUE;
-            neighbors = game.getNeighbors(n);
+            neighbors = game.moves(n).iterator();
 
-            if(neighbors.size() == 0)
+            if(!neighbors.hasNext())
             {
                 bestPosition = n;
                 game.setScore(n, 0);
             }
             else {
-                for (Node aNode : neighbors) {
-                    if (bestValue < 1) //If a winning move is found, stop searching
-                    {
-                        if (!visitedConfigs.contains(aNode.hashCode())) {
-                            visitedConfigs.add(aNode.hashCode());
-                            val = miniMax(aNode, false).getScore();
-                            if (val > bestValue) {
-                                bestValue = val;
-                                bestPosition = aNode;
-                                bestPosition.setScore(bestValue);
-                            }
+                //If a winning move is found, stop searching without generating the remaining moves
+                while (bestValue < 1 && neighbors.hasNext()) {
+                    Node aNode = neighbors.next();
+                    if (visitedConfigs.add(aNode)) {
+                        val = score(aNode, false, searched);
+                        if (val > bestValue) {
+                            bestValue = val;
+                            bestPosition = aNode;
+                            bestPosition.setScore(bestValue);
                         }
                     }
                 }
@@ -82,23 +264,21 @@ public class Solver
         //Check moves if the minimizing player
         else {
             bestValue = Integer.MAX_VALUE;
-            neighbors = game.getNeighbors(n);
-            if (neighbors.size() == 0) {
+            neighbors = game.moves(n).iterator();
+            if (!neighbors.hasNext()) {
                 bestPosition = n;
                 game.setScore(n , 0);
             }
             {
-                for (Node aNode : neighbors) {
-                    if (bestValue > -1) //If a winning move is found, stop searching
-                    {
-                        if (!visitedConfigs.contains(aNode.hashCode())) {
-                            visitedConfigs.add(aNode.hashCode());
-                            val = miniMax(aNode, true).getScore();
-                            if (val < bestValue) {
-                                bestValue = val;
-                                bestPosition = aNode;
-                                bestPosition.setScore(bestValue);
-                            }
+                //If a winning move is found, stop searching without generating the remaining moves
+                while (bestValue > -1 && neighbors.hasNext()) {
+                    Node aNode = neighbors.next();
+                    if (visitedConfigs.add(aNode)) {
+                        val = score(aNode, true, searched);
+                        if (val < bestValue) {
+                            bestValue = val;
+                            bestPosition = aNode;
+                            bestPosition.setScore(bestValue);
                         }
                     }
                 }
@@ -108,4 +288,230 @@ public class Solver
 
         return bestPosition;
     }
+
+    /**
+     * Finds the score of a configuration, using the solved table or the cache when it has already been solved, the
+     * components' Grundy values if the game is a sum or the game's formula if it has one
+     *
+     * @param n The configuration
+     * @param max True if the maximizing player is to move in n
+     * @param searched Counts the configurations searched
+     * @return The score of n for the maximizing player
+     */
+    private int score(Node n, boolean max, long[] searched)
+    {
+        int known = known(n);
+        if(known != TranspositionTable.MISS)
+            return max ? known : -known;
+
+        int val;
+        long key = game.hashKey(n);
+        int cached = cache.lookup(key);
+
+        //Bounds left by the null window searches do not give a score
+        if(cached >= -1 && cached <= 1)
+        {
+            val = max ? cached : -cached;
+        }
+        else
+        {
+            long before = searched[0];
+            val = miniMax(n, max, searched).getScore();
+            cache.store(key, max ? val : -val, 63 - Long.numberOfLeadingZeros(searched[0] - before));
+        }
+
+        return val;
+    }
+
+    /**
+     * Finds the score of a configuration without searching, from the solved table, the Grundy values of its
+     * components, the game's formula or because the game says it can only be a tie
+     *
+     * @param n The configuration
+     * @return 1 if the player to move wins, -1 if they lose, 0 if tie, or TranspositionTable.MISS if it has to be
+     * searched
+     */
+    private int known(Node n)
+    {
+        int known = solved == null ? TranspositionTable.MISS : solved.value(n);
+        if(known == TranspositionTable.MISS && sums != null)
+            known = sums.value(n);
+        if(known == TranspositionTable.MISS && oracle != null)
+            known = oracle.value(n);
+        if(known == TranspositionTable.MISS && game.isDraw(n))
+            known = 0;
+        return known;
+    }
+
+    /**
+     * Finds the best move with a null window search. The first move is scored exactly, and each later move is only
+     * scored exactly if a null window search shows it beats the best so far.
+     *
+     * @param n The configuration to move from
+     * @param mode PVS or MTDF
+     * @param searched Counts the configurations searched
+     * @return The node containing the best move, scored for the player to move in n
+     */
+    private Node nullWindowRoot(Node n, int mode, long[] searched)
+    {
+        Node bestPosition = null;
+        int bestValue = -2;
+
+        nodes.increment();
+        searched[0]++;
+        if(game.isGoal(n))
+        {
+            game.setScore(n, 1);
+            return n;
+        }
+
+        Iterator<Node> neighbors = game.moves(n).iterator();
+        if(!neighbors.hasNext())
+        {
+            n.setScore(0);
+            return n;
+        }
+
+        while(bestValue < 1 && neighbors.hasNext())
+        {
+            Node aNode = neighbors.next();
+            int val;
+
+            if(bestPosition == null)
+                val = -exact(aNode, mode, searched);
+            else
+            {
+                //Does the move beat the best so far? Only then is its exact score needed
+                val = -alphaBeta(aNode, -bestValue - 1, -bestValue, mode, searched);
+                if(val > bestValue && val < 1)
+                    val = -exact(aNode, mode, searched);
+            }
+
+            if(val > bestValue)
+            {
+                bestValue = val;
+                bestPosition = aNode;
+                bestPosition.setScore(bestValue);
+            }
+        }
+
+        return bestPosition;
+    }
+
+    /**
+     * Finds the exact score of a configuration
+     *
+     * @param n The configuration
+     * @param mode PVS or MTDF
+     * @param searched Counts the configurations searched
+     * @return 1 if the player to move wins, -1 if they lose, 0 if tie
+     */
+    private int exact(Node n, int mode, long[] searched)
+    {
+        if(mode == PVS)
+            return alphaBeta(n, -1, 1, mode, searched);
+
+        //MTD(f): a tie is the most likely score, so test it first and move the null window up or down from there
+        int guess = 0;
+        int lower = -1;
+        int upper = 1;
+        while(lower < upper)
+        {
+            int beta = guess == lower ? guess + 1 : guess;
+            guess = alphaBeta(n, beta - 1, beta, mode, searched);
+            if(guess < beta)
+                upper = guess;
+            else
+                lower = guess;
+        }
+        return guess;
+    }
+
+    /**
+     * Fail soft alpha-beta search from the point of view of the player to move. Results outside the window are
+     * stored in the cache as bounds.
+     *
+     * @param n The configuration
+     * @param alpha Score the player to move already has elsewhere
+     * @param beta Score the opponent already has elsewhere
+     * @param mode PVS to give only the first move a full window, MTDF to search every move with the window given
+     * @param searched Counts the configurations searched
+     * @return The exact score if it is inside the window, otherwise a bound on the side the window was missed
+     */
+    private int alphaBeta(Node n, int alpha, int beta, int mode, long[] searched)
+    {
+        int known = known(n);
+        if(known != TranspositionTable.MISS)
+            return known;
+
+        long key = game.hashKey(n);
+        int cached = cache.lookup(key);
+        if(cached >= -1 && cached <= 1)
+            return cached;
+        if(cached == TranspositionTable.AT_LEAST_TIE && 0 >= beta
+                || cached == TranspositionTable.AT_MOST_TIE && 0 <= alpha)
+            return 0;
+        if(cached == TranspositionTable.AT_LEAST_TIE)
+            alpha = Math.max(alpha, 0);
+        else if(cached == TranspositionTable.AT_MOST_TIE)
+            beta = Math.min(beta, 0);
+
+        //Like miniMax, only count configurations the cache could not answer; work counts this one, so it is at least 0
+        long before = searched[0];
+        nodes.increment();
+        searched[0]++;
+        if(stopped || Thread.currentThread().isInterrupted())
+            throw new CancellationException("Search interrupted");
+
+        if(game.isGoal(n))
+        {
+            game.setScore(n, 1);
+            cache.store(key, n.getScore(), 0);
+            return n.getScore();
+        }
+
+        int originalAlpha = alpha;
+        int bestValue = -2;
+        boolean first = true;
+
+        for(Node aNode : game.moves(n))
+        {
+            int val;
+            if(first || mode != PVS)
+                val = -alphaBeta(aNode, -beta, -alpha, mode, searched);
+            else
+            {
+                val = -alphaBeta(aNode, -alpha - 1, -alpha, mode, searched);
+                if(val > alpha && val < beta)
+                    val = -alphaBeta(aNode, -beta, -alpha, mode, searched);
+            }
+            first = false;
+
+            if(val > bestValue)
+            {
+                bestValue = val;
+                if(bestValue > alpha)
+                    alpha = bestValue;
+                if(alpha >= beta)
+                    break;
+            }
+        }
+
+        //No moves left is a tie
+        if(bestValue == -2)
+            bestValue = 0;
+
+        int stored = bestValue;
+        if(bestValue == 0 && bestValue <= originalAlpha)
+            stored = TranspositionTable.AT_MOST_TIE;
+        else if(bestValue == 0 && bestValue >= beta)
+            stored = TranspositionTable.AT_LEAST_TIE;
+
+        //A bound that meets the bound already stored proves a tie
+        if(stored == -cached && (cached == TranspositionTable.AT_LEAST_TIE || cached == TranspositionTable.AT_MOST_TIE))
+            stored = 0;
+        cache.store(key, stored, 63 - Long.numberOfLeadingZeros(searched[0] - before));
+
+        return bestValue;
+    }
 }
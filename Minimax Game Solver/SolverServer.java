@@ -0,0 +1,342 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Long running local service that answers best move queries for TakeAway, Stones and Connect3 over a line protocol.
+ * Each connection is handled on its own virtual thread and all queries for a game share one fixed size solver cache,
+ * so memory use stays flat for the life of the process. Queries go through an EngineRouter, so easy positions are
+ * solved exactly and positions with too many moves left get a budgeted search instead.
+ *
+ * The caches start a new search on a timer rather than once per query. Queries run at the same time, so a new search
+ * for each one would make every other query's scores stale as soon as they were stored, and a cache that prefers to
+ * keep costly scores from the current search would end up replacing whatever it held.
+ *
+ * Requests, one per line:
+ *   TAKEAWAY num_coins                 replies OK coins_taken score
+ *   STONES pile-1 pile-2 pile-N        replies OK pile stones_taken score
+ *   CONNECT3 first row-1 row-2 row-N   replies OK column score
+ *   STATS                              replies OK game=entries/hit_rate/routes for each game
+ *   QUIT                               closes the connection
+ *
+ * For Connect3 first is X or O, the player who moves when both have placed the same number of pieces, and each row
+ * is written top to bottom as a string of X, O and . characters. The score is 1 if the player to move wins, -1 if
+ * they lose and 0 for a tie, or ? if the position was too big to solve and the move is only the likely best. Bad
+ * requests are answered with ERR followed by a message.
+ *
+ * @author Jeff DeSain
+ */
+public class SolverServer
+{
+    private static final String USAGE = "Usage: java SolverServer [port [table]]"; //Usage statement
+    private static final int DEFAULT_PORT = 4321; //Port used when none is given
+    private static final String DEFAULT_TABLE = "32"; //Each game's cache when none is given, 32 megabytes on heap
+    private static final int CONNECT3_LIMIT = 30; //Most empty spaces searched to the end, Connect3 games end quickly
+    private static final long AGE_INTERVAL = 60000; //Milliseconds between new searches in the caches
+
+    private final TranspositionTable takeAwayCache; //Shared TakeAway scores
+    private final TranspositionTable stonesCache; //Shared Stones scores
+    private final TranspositionTable connect3Cache; //Shared Connect3 scores
+    private final EngineRouter takeAwayRouter; //Chooses how TakeAway queries are solved
+    private final EngineRouter stonesRouter; //Chooses how Stones queries are solved
+    private final EngineRouter connect3Router; //Chooses how Connect3 queries are solved
+
+
+    /**
+     * @param table Description of each game's cache, see TranspositionTable.create
+     */
+    public SolverServer(String table)
+    {
+        takeAwayCache = TranspositionTable.create(table);
+        stonesCache = TranspositionTable.create(table);
+        connect3Cache = TranspositionTable.create(table);
+
+        //Each router only needs its game's rules, which depend on nothing but the configuration being searched
+        takeAwayRouter = new EngineRouter(new TakeAway(0), takeAwayCache);
+        stonesRouter = new EngineRouter(new Stones(new ArrayList<Integer>(Collections.singletonList(0))), stonesCache);
+        connect3Router = new EngineRouter(new Connect3(Games.emptyBoard(1, 1), true), connect3Cache, null,
+                CONNECT3_LIMIT, EngineRouter.DEFAULT_THINK);
+    }
+
+
+    public static void main(String[] args)
+    {
+        int port = DEFAULT_PORT;
+        SolverServer server = null;
+
+        try
+        {
+            if(args.length > 2)
+                throw new IllegalArgumentException();
+            if(args.length >= 1)
+                port = Integer.parseInt(args[0]);
+            server = new SolverServer(args.length == 2 ? args[1] : DEFAULT_TABLE);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        try
+        {
+            server.serve(port);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not listen on port " + port + ": " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Accepts connections until the process is stopped
+     *
+     * @param port The port to listen on
+     * @throws IOException If the server socket cannot be opened
+     */
+    public void serve(int port) throws IOException
+    {
+        ExecutorService executor = VirtualThreads.newExecutor();
+        ScheduledExecutorService ager = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "cache ager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ager.scheduleWithFixedDelay(this::ageCaches, AGE_INTERVAL, AGE_INTERVAL, TimeUnit.MILLISECONDS);
+
+        try(ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress()))
+        {
+            System.out.println("Listening on port " + server.getLocalPort()
+                    + (VirtualThreads.available() ? " (virtual threads)" : " (platform threads)"));
+
+            while(true)
+            {
+                Socket client = server.accept();
+                executor.submit(() -> handleConnection(client));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            ager.shutdownNow();
+            takeAwayRouter.shutdown();
+            stonesRouter.shutdown();
+            connect3Router.shutdown();
+        }
+    }
+
+    /**
+     * Starts a new search in every cache, so scores stored before now are the first to be replaced
+     */
+    public void ageCaches()
+    {
+        takeAwayCache.newSearch();
+        stonesCache.newSearch();
+        connect3Cache.newSearch();
+    }
+
+    /**
+     * Answers requests from one client until it quits or disconnects
+     *
+     * @param client The client's socket
+     */
+    private void handleConnection(Socket client)
+    {
+        try(Socket socket = client;
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))))
+        {
+            String line;
+            while((line = in.readLine()) != null && !line.trim().equalsIgnoreCase("QUIT"))
+            {
+                out.println(handle(line));
+                out.flush();
+            }
+        }
+        catch(IOException e)
+        {
+            //The client went away, nothing left to answer
+        }
+    }
+
+    /**
+     * Answers a single request
+     *
+     * @param line The request
+     * @return The reply
+     */
+    public String handle(String line)
+    {
+        String[] words = line.trim().split("\\s+");
+        String reply;
+
+        try
+        {
+            switch(words[0].toUpperCase())
+            {
+                case "TAKEAWAY":
+                    reply = takeAway(words);
+                    break;
+                case "STONES":
+                    reply = stones(words);
+                    break;
+                case "CONNECT3":
+                    reply = connect3(words);
+                    break;
+                case "STATS":
+                    reply = "OK " + stats("takeaway", takeAwayCache, takeAwayRouter) + " "
+                            + stats("stones", stonesCache, stonesRouter) + " "
+                            + stats("connect3", connect3Cache, connect3Router);
+                    break;
+                default:
+                    reply = "ERR unknown game " + words[0];
+            }
+        }
+        catch(NumberFormatException e)
+        {
+            reply = "ERR expected a number";
+        }
+        catch(IllegalArgumentException e)
+        {
+            reply = "ERR " + e.getMessage();
+        }
+        catch(RuntimeException e)
+        {
+            //Anything else the search throws, such as a cancelled search, fails only this request
+            reply = "ERR " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+        catch(StackOverflowError e)
+        {
+            reply = "ERR position too deep to search";
+        }
+
+        return reply;
+    }
+
+    /**
+     * Describes how full a cache is, how often it is hit and how many queries took each route
+     *
+     * @param name The game the cache is for
+     * @param cache The cache
+     * @param router The game's router
+     * @return The description
+     */
+    private static String stats(String name, TranspositionTable cache, EngineRouter router)
+    {
+        return String.format("%s=%d/%.3f/%s", name, cache.size(), cache.hitRate(),
+                router.summary().replace('=', ':').replace(' ', ','));
+    }
+
+    /**
+     * Finds the best TakeAway move
+     *
+     * @param words The request split into words
+     * @return The reply
+     */
+    private String takeAway(String[] words)
+    {
+        if(words.length != 2)
+            throw new IllegalArgumentException("usage TAKEAWAY num_coins");
+
+        int coins = Integer.parseInt(words[1]);
+        if(coins < 1)
+            throw new IllegalArgumentException("game is over");
+
+        Node position = new Node<Integer>(coins);
+        Node move = takeAwayRouter.getMove(position);
+
+        return "OK " + (coins - (Integer)move.getData()) + " " + score(takeAwayRouter, position, move);
+    }
+
+    /**
+     * Finds the best Stones move
+     *
+     * @param words The request split into words
+     * @return The reply
+     */
+    private String stones(String[] words)
+    {
+        ArrayList<Integer> piles = new ArrayList<Integer>();
+
+        for(int i = 1; i < words.length; i++)
+        {
+            int pile = Integer.parseInt(words[i]);
+            if(pile < 0)
+                throw new IllegalArgumentException("piles cannot be negative");
+            piles.add(pile);
+        }
+
+        Stones game = new Stones(piles);
+        if(game.gameOver())
+            throw new IllegalArgumentException("game is over");
+
+        Node position = game.getCurrentPosition();
+        Node move = stonesRouter.getMove(position);
+        int[] taken = game.findMove(move);
+
+        return "OK " + taken[0] + " " + taken[1] + " " + score(stonesRouter, position, move);
+    }
+
+    /**
+     * Finds the best Connect3 move
+     *
+     * @param words The request split into words
+     * @return The reply
+     */
+    private String connect3(String[] words)
+    {
+        if(words.length < 3 || !(words[1].equals("X") || words[1].equals("O")))
+            throw new IllegalArgumentException("usage CONNECT3 X|O row-1 row-2 row-N");
+
+        boolean xFirst = words[1].equals("X");
+        int width = words[2].length();
+        int height = words.length - 2;
+        char[][] board = new char[width][height];
+
+        for(int j = 0; j < height; j++)
+        {
+            String row = words[j + 2];
+            if(row.length() != width)
+                throw new IllegalArgumentException("rows must all be the same length");
+
+            for(int i = 0; i < width; i++)
+            {
+                char c = row.charAt(i);
+                if(c != 'X' && c != 'O' && c != '.')
+                    throw new IllegalArgumentException("invalid piece " + c);
+                board[i][j] = c;
+            }
+        }
+
+        //Connect3 rejects floating pieces and uneven counts; the count must also agree with who moves first
+        Connect3 game = new Connect3(board, xFirst);
+        Connect3.Position start = (Connect3.Position)game.getCurrentPosition().getData();
+        int lead = start.getXCount() - start.getOCount();
+        if(lead == (xFirst ? -1 : 1))
+            throw new IllegalArgumentException((xFirst ? "O" : "X") + " cannot have more pieces when " + words[1]
+                    + " moves first");
+        if(game.gameOver())
+            throw new IllegalArgumentException("game is over");
+
+        Node position = game.getCurrentPosition();
+        Node move = connect3Router.getMove(position);
+
+        return "OK " + ((Connect3.Position)move.getData()).getLastColumn() + " "
+                + score(connect3Router, position, move);
+    }
+
+    /**
+     * Writes the score of a move found by a router
+     *
+     * @param router The router that found the move
+     * @param position The configuration moved from
+     * @param move The move found
+     * @return The move's score, or ? if it was found by a budgeted search and is only the likely best
+     */
+    private static String score(EngineRouter router, Node position, Node move)
+    {
+        return router.route(position) == EngineRouter.ANYTIME ? "?" : String.valueOf(move.getScore());
+    }
+}
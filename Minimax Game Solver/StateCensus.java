@@ -0,0 +1,448 @@
+import java.lang.invoke.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Counts every distinct configuration that can be reached from the start of a game, in total and by the fewest moves
+ * needed to reach it, so the size of a cache or solved table for the game is known exactly. Configurations are found
+ * breadth first, one move at a time, with the configurations found by the last move split between threads.
+ *
+ * Configurations already found are remembered without keeping the configurations themselves. Games that number their
+ * configurations (RetrogradeGame) use one bit per configuration index, in memory outside the Java heap, as long as
+ * the bits fit in the memory allowed. Other games use a set of their 64 bit hash keys, kept in arrays of longs with
+ * open addressing, which is exact as long as the keys of different configurations never collide.
+ *
+ * @author Jeff DeSain
+ */
+public class StateCensus
+{
+    private static final String USAGE = "Usage: java StateCensus [-threads n] [-memory mb] " + Games.USAGE;
+                                                         //Usage statement
+    public static final int DEFAULT_MEMORY = 1024; //Default most megabytes for a set of configuration indexes
+    private static final int CHUNKS_PER_THREAD = 4; //Tasks per thread for each move, so threads finish together
+
+    private Game game; //The game being counted
+    private int threads; //Number of threads expanding configurations at once
+    private Visited visited; //Configurations found so far
+    private final List<long[]> plies = new ArrayList<long[]>(); //New and finished configurations found by each move
+
+
+    /**
+     * @param game The game being counted
+     * @param threads Number of threads expanding configurations at once
+     * @param memoryMegabytes Most megabytes for a set of configuration indexes, above which hash keys are used
+     */
+    public StateCensus(Game game, int threads, int memoryMegabytes)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("Need at least one thread");
+
+        this.game = game;
+        this.threads = threads;
+
+        long bytes = game instanceof RetrogradeGame ? (((RetrogradeGame)game).stateCount() + 7) / 8 : Long.MAX_VALUE;
+        if(bytes <= (long)memoryMegabytes * 1024 * 1024)
+            visited = new IndexSet((RetrogradeGame)game);
+        else
+            visited = new KeySet(game);
+    }
+
+    public static void main(String[] args)
+    {
+        Game game = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int memory = DEFAULT_MEMORY;
+        int first = 0;
+
+        try
+        {
+            while(first + 1 < args.length && args[first].startsWith("-"))
+            {
+                if(args[first].equals("-threads"))
+                    threads = Integer.parseInt(args[first + 1]);
+                else if(args[first].equals("-memory"))
+                    memory = Integer.parseInt(args[first + 1]);
+                else
+                    throw new IllegalArgumentException();
+                first += 2;
+            }
+            game = Games.parse(args, first);
+            if(threads < 1 || memory < 0)
+                throw new IllegalArgumentException();
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        StateCensus census = new StateCensus(game, threads, memory);
+        System.out.println(game);
+
+        long start = System.nanoTime();
+        long total = census.count(game.getCurrentPosition());
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%4s %16s %16s %16s%n", "ply", "new", "finished", "total");
+        long sum = 0;
+        for(int ply = 0; ply < census.getPlies(); ply++)
+        {
+            sum += census.getNew(ply);
+            System.out.printf("%4d %16d %16d %16d%n", ply, census.getNew(ply), census.getFinished(ply), sum);
+        }
+        System.out.println(total + " configurations in " + elapsed / 1000000 + " ms on " + threads + " threads, "
+                + census.describeSet());
+    }
+
+    /**
+     * Counts the configurations reachable from a configuration, which is counted at ply 0. Configurations are
+     * remembered for the life of the census, so each census should only count once.
+     *
+     * @param start The configuration
+     * @return Number of distinct configurations found
+     */
+    public long count(Node start)
+    {
+        plies.clear();
+        visited.add(start);
+        List<Node> frontier = Collections.singletonList(start);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            long[] first = {1, 0};
+            plies.add(first);
+
+            while(!frontier.isEmpty())
+            {
+                List<Node> current = frontier;
+                int size = Math.max(1, (current.size() + threads * CHUNKS_PER_THREAD - 1)
+                        / (threads * CHUNKS_PER_THREAD));
+
+                List<Callable<Found>> tasks = new ArrayList<Callable<Found>>();
+                for(int from = 0; from < current.size(); from += size)
+                {
+                    int begin = from;
+                    tasks.add(() -> expand(current, begin, Math.min(begin + size, current.size())));
+                }
+
+                //Configurations whose game is over have no moves; count them on the ply they were found
+                List<Node> next = new ArrayList<Node>();
+                long finished = 0;
+                for(Future<Found> part : executor.invokeAll(tasks))
+                {
+                    Found found = part.get();
+                    finished += found.finished;
+                    next.addAll(found.nodes);
+                }
+
+                plies.get(plies.size() - 1)[1] = finished;
+                if(!next.isEmpty())
+                    plies.add(new long[]{next.size(), 0});
+                frontier = next;
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Census interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        return visited.size();
+    }
+
+    /**
+     * @return Number of plies on which new configurations were found, the start included
+     */
+    public int getPlies()
+    {
+        return plies.size();
+    }
+
+    /**
+     * @param ply Fewest moves from the start
+     * @return Number of configurations first reached after that many moves
+     */
+    public long getNew(int ply)
+    {
+        return plies.get(ply)[0];
+    }
+
+    /**
+     * @param ply Fewest moves from the start
+     * @return Number of configurations first reached after that many moves in which the game is over
+     */
+    public long getFinished(int ply)
+    {
+        return plies.get(ply)[1];
+    }
+
+    /**
+     * @return What kind of set remembered the configurations and how much memory it took
+     */
+    public String describeSet()
+    {
+        return visited.describe();
+    }
+
+    /**
+     * Finds the configurations one move from part of the frontier that have not been found before
+     *
+     * @param frontier Configurations first reached by the last move
+     * @param from First position in frontier
+     * @param to One past the last position
+     * @return The new configurations, with the number of finished games among from to to
+     */
+    private Found expand(List<Node> frontier, int from, int to)
+    {
+        Found found = new Found();
+
+        for(int i = from; i < to; i++)
+        {
+            Node n = frontier.get(i);
+            if(game.isGoal(n))
+            {
+                found.finished++;
+                continue;
+            }
+
+            //A certain tie is over as far as the players are concerned, but its remaining moves can still be played
+            ArrayList<Node> neighbors = game.getNeighbors(n);
+            if(neighbors.isEmpty() || game.isDraw(n))
+                found.finished++;
+
+            for(Node next : neighbors)
+            {
+                if(visited.add(next))
+                    found.nodes.add(next);
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * New configurations found by one task, and how many of the configurations it expanded were finished
+     */
+    private static final class Found
+    {
+        final List<Node> nodes = new ArrayList<Node>(); //The new configurations
+        long finished; //Configurations expanded in which the game is won, tied or certain to be a tie
+    }
+
+    /**
+     * Set of configurations found, safe to add to from many threads at once
+     */
+    private interface Visited
+    {
+        /**
+         * Adds a configuration
+         *
+         * @param n The configuration
+         * @return True if it was not in the set before
+         */
+        boolean add(Node n);
+
+        /**
+         * @return Number of configurations in the set
+         */
+        long size();
+
+        /**
+         * @return What kind of set this is and how much memory it takes
+         */
+        String describe();
+    }
+
+    /**
+     * One bit per configuration index, in direct byte buffers of up to 1 gigabyte, set with compare and swap
+     */
+    private static final class IndexSet implements Visited
+    {
+        private static final int CHUNK_SHIFT = 30 - 3; //log 2 of the longs in a 1 gigabyte chunk
+        private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1; //Long index within a chunk
+        private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class,
+                ByteOrder.nativeOrder()); //Atomic access to the longs of a buffer
+
+        private final RetrogradeGame game; //Numbers the configurations
+        private final ByteBuffer[] chunks; //The bits
+        private final long bytes; //Memory taken by the bits
+        private final LongAdder count = new LongAdder(); //Number of bits set
+
+        IndexSet(RetrogradeGame game)
+        {
+            this.game = game;
+
+            long words = (game.stateCount() + 63) >>> 6;
+            int chunkCount = (int)((words + CHUNK_MASK) >>> CHUNK_SHIFT);
+            chunks = new ByteBuffer[chunkCount];
+            for(int i = 0; i < chunkCount; i++)
+            {
+                long chunkWords = Math.min(words - ((long)i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+                chunks[i] = ByteBuffer.allocateDirect((int)(chunkWords * 8)).order(ByteOrder.nativeOrder());
+            }
+            bytes = words * 8;
+        }
+
+        public boolean add(Node n)
+        {
+            long index = game.index(n);
+            long word = index >>> 6;
+            long bit = 1L << (index & 63);
+            ByteBuffer chunk = chunks[(int)(word >>> CHUNK_SHIFT)];
+            int offset = (int)(word & CHUNK_MASK) * 8;
+
+            while(true)
+            {
+                long old = (long)WORDS.getVolatile(chunk, offset);
+                if((old & bit) != 0)
+                    return false;
+                if(WORDS.compareAndSet(chunk, offset, old, old | bit))
+                {
+                    count.increment();
+                    return true;
+                }
+            }
+        }
+
+        public long size()
+        {
+            return count.sum();
+        }
+
+        public String describe()
+        {
+            return String.format("index bitset of %.1f MB off heap", bytes / 1048576.0);
+        }
+    }
+
+    /**
+     * The configurations' hash keys, split by their high bits between segments that each have their own lock. Each
+     * segment is an array of keys with linear probing that doubles when it is three quarters full.
+     */
+    private static final class KeySet implements Visited
+    {
+        private static final int SEGMENT_BITS = 6; //log 2 of the number of segments
+
+        private final Game game; //Gives the hash keys
+        private final Segment[] segments = new Segment[1 << SEGMENT_BITS]; //The keys
+
+        KeySet(Game game)
+        {
+            this.game = game;
+            for(int i = 0; i < segments.length; i++)
+                segments[i] = new Segment();
+        }
+
+        public boolean add(Node n)
+        {
+            long key = game.hashKey(n);
+            long hash = TranspositionTable.mix(key);
+            Segment segment = segments[(int)(hash >>> (64 - SEGMENT_BITS))];
+            synchronized(segment)
+            {
+                return segment.add(key, hash);
+            }
+        }
+
+        public long size()
+        {
+            long total = 0;
+            for(Segment segment : segments)
+            {
+                synchronized(segment)
+                {
+                    total += segment.size;
+                }
+            }
+            return total;
+        }
+
+        public String describe()
+        {
+            long bytes = 0;
+            for(Segment segment : segments)
+            {
+                synchronized(segment)
+                {
+                    bytes += segment.keys.length * 8L;
+                }
+            }
+            return String.format("hash key set of %.1f MB", bytes / 1048576.0);
+        }
+    }
+
+    /**
+     * One segment of a KeySet. 0 marks an empty slot, so a key of 0 is remembered separately.
+     */
+    private static final class Segment
+    {
+        long[] keys = new long[256]; //The keys, a power of two in length
+        long size; //Number of keys, the key 0 included
+        boolean hasZero; //True if the key 0 has been added
+
+        /**
+         * Adds a key
+         *
+         * @param key The key
+         * @param hash The mixed key
+         * @return True if it was not in the segment before
+         */
+        boolean add(long key, long hash)
+        {
+            if(key == 0)
+            {
+                if(hasZero)
+                    return false;
+                hasZero = true;
+                size++;
+                return true;
+            }
+
+            int mask = keys.length - 1;
+            int i = (int)hash & mask;
+            while(keys[i] != 0)
+            {
+                if(keys[i] == key)
+                    return false;
+                i = (i + 1) & mask;
+            }
+
+            keys[i] = key;
+            size++;
+            if(size * 4 > keys.length * 3L)
+                grow();
+            return true;
+        }
+
+        /**
+         * Doubles the number of slots
+         */
+        private void grow()
+        {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            int mask = keys.length - 1;
+
+            for(long key : old)
+            {
+                if(key == 0)
+                    continue;
+                int i = (int)TranspositionTable.mix(key) & mask;
+                while(keys[i] != 0)
+                    i = (i + 1) & mask;
+                keys[i] = key;
+            }
+        }
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.*;
 import java.util.*;
 
 
@@ -5,18 +6,40 @@ import java.util.*;
  * Simulates the game stones. Players alternate taking any number of stones from a single pile. The player who takes
  * the last stone loses. Uses the minimax algorithm to generate computer moves.
  *
+ * Since the order of the piles does not matter to the outcome, the solver works on Positions, which keep the pile
+ * sizes sorted and packed into a single long, or in an array when there are too many large piles for a long. Only
+ * packed games have configuration indexes and codes. The game itself also remembers the piles in the order the
+ * player sees them. Each pile is also an independent game of its own, so Solver scores positions from the piles'
+ * Grundy values instead of searching them.
+ *
  * @author Jeff DeSain
  */
-public class Stones implements Game
+public class Stones implements SumGame, RetrogradeGame
 {
 
-    private ArrayList<Integer> stones; //Configuration of stones
-    private static final String USAGE = "java Stones [play][auto] pile-1 pile-2 pile-N";
+    private ArrayList<Integer> stones; //Configuration of stones, in the order shown to the player
+    private Position position; //The same configuration, sorted and packed
+    private final int bits; //Bits used for each pile in a packed position
+    private static final String USAGE = "java Stones [-strategy file] [play][auto] pile-1 pile-2 pile-N";
 
 
+    /**
+     * @param stones Size of each pile
+     * @throws IllegalArgumentException If a pile is negative
+     */
     public Stones(ArrayList<Integer> stones)
     {
+        int largest = 1;
+        for(int pile : stones)
+        {
+            if(pile < 0)
+                throw new IllegalArgumentException("Piles cannot be negative");
+            largest = Math.max(largest, pile);
+        }
+
+        this.bits = 32 - Integer.numberOfLeadingZeros(largest);
         this.stones = new ArrayList<Integer>(stones);
+        this.position = Position.of(stones, bits);
     }
 
     /**
@@ -29,32 +52,66 @@ public class Stones implements Game
     public ArrayList<Node> getNeighbors(Node n)
     {
         ArrayList<Node> neighbors = new ArrayList<Node>();
-        ArrayList<Integer> data = (ArrayList<Integer>)n.getData();
+        for(Node neighbor : moves(n))
+            neighbors.add(neighbor);
 
-        for(int i = 0; i < data.size(); i++)
-        {
-            int pileSize = data.get(i);
+        return neighbors;
+    }
 
-            /*
-            for(int j = 1; j <= pileSize; j++)
+    /**
+     * Returns the configurations reachable in one move. A move is just a pile and its new size until the iteration
+     * reaches it, and piles of equal size are only tried once since they lead to the same sorted configuration.
+     *
+     * @param n A particular configuration
+     * @return The configurations resulting from n
+     */
+    @Override
+    public Iterable<Node> moves(Node n)
+    {
+        Position data = (Position)n.getData();
+
+        return () -> new Iterator<Node>() {
+            private int pile = nextPile(data, -1); //Pile being reduced
+            private int newSize = 0; //Size it is reduced to next
+
+            public boolean hasNext()
             {
-                ArrayList<Integer> newData = new ArrayList<Integer>(data);
-                newData.set(i, newData.get(i) - j);
-                neighbors.add(new Node<ArrayList<Integer>>(newData));
+                return pile < data.count;
             }
-            */
-            //Taking more stones first reduces the total number of moves, and the subsequent number of neighbors
-            if(pileSize > 0) {
-                for (int j = 0; j < pileSize; j++) {
-                    ArrayList<Integer> newData = new ArrayList<Integer>(data);
-                    newData.set(i, j);
-                    neighbors.add(new Node<ArrayList<Integer>>(newData));
+
+            public Node next()
+            {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+
+                //Taking more stones first reduces the total number of moves, and the subsequent number of neighbors
+                Node neighbor = new Node<Position>(data.take(pile, newSize));
+                if(++newSize == data.get(pile))
+                {
+                    pile = nextPile(data, pile);
+                    newSize = 0;
                 }
+                return neighbor;
             }
+        };
+    }
 
+    /**
+     * Finds the next pile that has stones and is not the same size as the one before it
+     *
+     * @param data A configuration
+     * @param pile The current pile, -1 to start
+     * @return The next pile, or the number of piles if there are none left
+     */
+    private static int nextPile(Position data, int pile)
+    {
+        for(pile++; pile < data.count; pile++)
+        {
+            int size = data.get(pile);
+            if(size > 0 && (pile == 0 || size != data.get(pile - 1)))
+                break;
         }
-
-        return neighbors;
+        return pile;
     }
 
     /**
@@ -66,26 +123,70 @@ public class Stones implements Game
     @Override
     public boolean isGoal(Node n)
     {
-        boolean goal = true;
-        ArrayList<Integer> nodeStones = (ArrayList<Integer>)n.getData();
-
-        for(int i = 0; i < nodeStones.size() && goal; i++)
-        {
-            if(nodeStones.get(i) != 0)
-                goal = false;
-        }
-        return goal;
+        return ((Position)n.getData()).isEmpty();
     }
 
     /**
-     * Updates the game after a move has been made
+     * Updates the game after a move has been made. The piles the player sees are changed to match, taking the stones
+     * from the first pile of the right size.
      *
      * @param n The new configuration after a move has been made
      */
     @Override
     public void update(Node n)
     {
-        this.stones = new ArrayList<Integer>((ArrayList<Integer>)n.getData());
+        int[] move = findMove(n);
+        if(move != null)
+            stones.set(move[0], stones.get(move[0]) - move[1]);
+        position = (Position)n.getData();
+    }
+
+    /**
+     * Removes stones from one of the piles the player sees
+     *
+     * @param pile The pile the stones are removed from
+     * @param move The number of stones removed
+     */
+    public void take(int pile, int move)
+    {
+        stones.set(pile, stones.get(pile) - move);
+        position = Position.of(stones, bits);
+    }
+
+    /**
+     * Works out which move leads from the current configuration to another one
+     *
+     * @param n A configuration one move after the current one
+     * @return The pile, in the order the player sees them, and the number of stones taken from it, or null if n is
+     * the current configuration
+     */
+    public int[] findMove(Node n)
+    {
+        Position after = (Position)n.getData();
+        if(position.equals(after))
+            return null;
+
+        //The sorted piles differ in one place: one pile of the old size became one of the new size
+        int oldSize = -1;
+        int newSize = -1;
+        for(int i = 0, j = 0; i < position.count && j < after.count; )
+        {
+            if(position.get(i) == after.get(j))
+            {
+                i++;
+                j++;
+            }
+            else if(position.get(i) > after.get(j))
+                newSize = after.get(j++);
+            else
+                oldSize = position.get(i++);
+        }
+        if(oldSize == -1)
+            oldSize = position.get(position.count - 1);
+        if(newSize == -1)
+            newSize = after.get(after.count - 1);
+
+        return new int[]{stones.indexOf(oldSize), oldSize - newSize};
     }
 
     /**
@@ -96,7 +197,7 @@ public class Stones implements Game
     @Override
     public boolean gameOver()
     {
-        return isGoal(new Node<ArrayList<Integer>>(new ArrayList<Integer>(stones)));
+        return position.isEmpty();
     }
 
     /**
@@ -107,7 +208,7 @@ public class Stones implements Game
     @Override
     public Node getCurrentPosition()
     {
-        return new Node<ArrayList<Integer>>(new ArrayList<Integer>(stones));
+        return new Node<Position>(position);
     }
 
 
@@ -122,10 +223,10 @@ public class Stones implements Game
     {
         boolean valid = true;
 
-        if(pile < 0 || pile > stones.size())
+        if(pile < 0 || pile >= stones.size())
             valid = false;
 
-        if(move < 1 || move > stones.get(pile))
+        else if(move < 1 || move > stones.get(pile))
             valid = false;
 
         return valid;
@@ -137,9 +238,203 @@ public class Stones implements Game
      */
     public int hashCode()
     {
-        ArrayList<Integer> hashStones = new ArrayList<Integer>(stones);
-        Collections.sort(hashStones);
-        return hashStones.hashCode();
+        return position.hashCode();
+    }
+
+    /**
+     * Gets a 64 bit key identifying a configuration
+     *
+     * @param n A particular configuration
+     * @return The configuration's key
+     */
+    @Override
+    public long hashKey(Node n)
+    {
+        Position data = (Position)n.getData();
+        if(data.piles != null)
+        {
+            long h = data.count;
+            for(int pile : data.piles)
+                h = TranspositionTable.mix(h ^ pile);
+            return h;
+        }
+
+        //The same packed value means different piles at a different number of bits per pile
+        return TranspositionTable.mix(data.packed ^ TranspositionTable.mix(data.bits));
+    }
+
+    /**
+     * Splits a configuration into its piles
+     *
+     * @param n A particular configuration
+     * @return A configuration for each pile that has stones
+     */
+    @Override
+    public List<Node> components(Node n)
+    {
+        Position data = (Position)n.getData();
+        List<Node> piles = new ArrayList<Node>();
+
+        for(int i = 0; i < data.count; i++)
+        {
+            if(data.get(i) > 0)
+                piles.add(new Node<Position>(Position.of(Collections.singletonList(data.get(i)), data.bits)));
+        }
+        return piles;
+    }
+
+    /**
+     * A single pile plays like a Nim heap, so its Grundy value is its size
+     *
+     * @param component A configuration with one pile
+     * @return The size of the pile, -1 for anything else
+     */
+    @Override
+    public int grundy(Node component)
+    {
+        Position data = (Position)component.getData();
+        return data.count == 1 ? data.get(0) : -1;
+    }
+
+    /**
+     * The player who takes the last stone loses
+     *
+     * @return True
+     */
+    @Override
+    public boolean isMisere()
+    {
+        return true;
+    }
+
+    /**
+     * Estimates how hard a configuration is to solve
+     *
+     * @param n A particular configuration
+     * @return The number of stones, since at least one is taken per move
+     */
+    @Override
+    public int movesLeft(Node n)
+    {
+        Position data = (Position)n.getData();
+        int stones = 0;
+        for(int i = 0; i < data.count; i++)
+            stones += data.get(i);
+        return stones;
+    }
+
+    /**
+     * @return Number of configuration indexes, every packed value with the same number of piles and bits per pile, or
+     * Long.MAX_VALUE if the piles are too large to pack
+     */
+    @Override
+    public long stateCount()
+    {
+        int total = stones.size() * bits;
+        return total >= 63 ? Long.MAX_VALUE : 1L << total;
+    }
+
+    /**
+     * Gets the configuration with a given index
+     *
+     * @param index A packed position
+     * @return The configuration, or null if the piles are not sorted or are too large to pack
+     */
+    @Override
+    public Node position(long index)
+    {
+        if(stones.size() * bits > 64)
+            return null;
+
+        Position data = new Position(index, bits, stones.size());
+
+        for(int i = 1; i < data.count; i++)
+        {
+            if(data.get(i) < data.get(i - 1))
+                return null;
+        }
+        return new Node<Position>(data);
+    }
+
+    /**
+     * Gets the index of a configuration
+     *
+     * @param n A particular configuration
+     * @return Its packed value, or -1 if it has a different number of piles or bits per pile or is not packed
+     */
+    @Override
+    public long index(Node n)
+    {
+        Position data = (Position)n.getData();
+        return data.piles == null && data.bits == bits && data.count == stones.size() ? data.packed : -1;
+    }
+
+    /**
+     * @return Bits per pile times the number of piles, or 0 if there are no piles or that is more than a long holds
+     */
+    @Override
+    public int codeBits()
+    {
+        int total = stones.size() * bits;
+        return total <= 64 ? total : 0;
+    }
+
+    /**
+     * Packs a configuration into a long, the same packed value as its index
+     *
+     * @param n A particular configuration
+     * @return Its packed piles, smallest pile in the lowest bits
+     */
+    @Override
+    public long encode(Node n)
+    {
+        Position data = (Position)n.getData();
+        if(codeBits() == 0)
+            throw new UnsupportedOperationException("Piles too large to encode");
+        if(data.bits != bits || data.count != stones.size())
+            throw new IllegalArgumentException("Not a configuration of this game: " + data);
+        return data.packed;
+    }
+
+    /**
+     * Unpacks a configuration packed by encode
+     *
+     * @param code Packed piles
+     * @return The configuration
+     */
+    @Override
+    public Node decode(long code)
+    {
+        if(codeBits() == 0)
+            throw new UnsupportedOperationException("Piles too large to decode");
+
+        Node n = position(code);
+        if(n == null || stones.size() * bits < 64 && code >>> (stones.size() * bits) != 0)
+            throw new IllegalArgumentException("Not a code of this game: " + code);
+        return n;
+    }
+
+    /**
+     * Returns the configurations with one pile larger, up to the largest pile that fits in the bits per pile
+     *
+     * @param n A particular configuration
+     * @return The configurations one move before n
+     */
+    @Override
+    public Iterable<Node> predecessors(Node n)
+    {
+        Position data = (Position)n.getData();
+        ArrayList<Node> predecessors = new ArrayList<Node>();
+
+        for(int i = 0; i < data.count; i++)
+        {
+            if(i == 0 || data.get(i) != data.get(i - 1))
+            {
+                for(int size = data.get(i) + 1; size < 1 << bits; size++)
+                    predecessors.add(new Node<Position>(data.raise(i, size)));
+            }
+        }
+        return predecessors;
     }
 
     /**
@@ -168,6 +463,202 @@ public class Stones implements Game
     }
 
 
+    /**
+     * An immutable Stones configuration: the pile sizes sorted from smallest to largest and packed into one long, a
+     * fixed number of bits per pile with the smallest pile in the lowest bits. When the piles take more than 64 bits
+     * they are kept in an array instead.
+     */
+    public static final class Position
+    {
+        private final long packed; //The packed pile sizes, 0 if they are in piles
+        private final int[] piles; //The sorted pile sizes if they do not fit in a long, null otherwise
+        private final int bits; //Bits per pile
+        private final int count; //Number of piles, including empty ones
+
+        /**
+         * @param packed The packed pile sizes, already sorted
+         * @param bits Bits per pile
+         * @param count Number of piles
+         */
+        private Position(long packed, int bits, int count)
+        {
+            this.packed = packed;
+            this.piles = null;
+            this.bits = bits;
+            this.count = count;
+        }
+
+        /**
+         * @param piles The pile sizes, already sorted, which are not copied
+         * @param bits Bits per pile
+         */
+        private Position(int[] piles, int bits)
+        {
+            this.packed = 0;
+            this.piles = piles;
+            this.bits = bits;
+            this.count = piles.length;
+        }
+
+        /**
+         * Packs a list of piles
+         *
+         * @param piles The pile sizes, in any order
+         * @param bits Bits per pile
+         * @return The position
+         */
+        static Position of(List<Integer> piles, int bits)
+        {
+            int[] sorted = new int[piles.size()];
+            for(int i = 0; i < sorted.length; i++)
+                sorted[i] = piles.get(i);
+            Arrays.sort(sorted);
+            if(sorted.length * bits > 64)
+                return new Position(sorted, bits);
+
+            long packed = 0;
+            for(int i = sorted.length - 1; i >= 0; i--)
+                packed = packed << bits | sorted[i];
+
+            return new Position(packed, bits, sorted.length);
+        }
+
+        /**
+         * Getter for a pile
+         *
+         * @param i Index of the pile in sorted order
+         * @return Number of stones in the pile
+         */
+        public int get(int i)
+        {
+            if(piles != null)
+                return piles[i];
+            return (int)(packed >>> (i * bits)) & ((1 << bits) - 1);
+        }
+
+        /**
+         * @return Number of piles, including empty ones
+         */
+        public int size()
+        {
+            return count;
+        }
+
+        /**
+         * @return True if every pile is empty
+         */
+        public boolean isEmpty()
+        {
+            if(piles != null)
+                return count == 0 || piles[count - 1] == 0;
+            return packed == 0;
+        }
+
+        /**
+         * Reduces a pile, keeping the piles sorted
+         *
+         * @param pile Index of the pile in sorted order
+         * @param newSize Its new size, smaller than the current one
+         * @return The resulting position
+         */
+        public Position take(int pile, int newSize)
+        {
+            if(piles != null)
+            {
+                int[] result = piles.clone();
+                int i = pile;
+                for(; i > 0 && result[i - 1] > newSize; i--)
+                    result[i] = result[i - 1];
+                result[i] = newSize;
+                return new Position(result, bits);
+            }
+
+            long mask = (1L << bits) - 1;
+            long result = packed;
+
+            //Slide the smaller piles that are larger than newSize up one place, then put newSize below them
+            int i = pile;
+            while(i > 0 && get(i - 1) > newSize)
+            {
+                result = result & ~(mask << (i * bits)) | (long)get(i - 1) << (i * bits);
+                i--;
+            }
+            return new Position(result & ~(mask << (i * bits)) | (long)newSize << (i * bits), bits, count);
+        }
+
+        /**
+         * Enlarges a pile, keeping the piles sorted
+         *
+         * @param pile Index of the pile in sorted order
+         * @param newSize Its new size, larger than the current one
+         * @return The resulting position
+         */
+        public Position raise(int pile, int newSize)
+        {
+            if(piles != null)
+            {
+                int[] result = piles.clone();
+                int i = pile;
+                for(; i < count - 1 && result[i + 1] < newSize; i++)
+                    result[i] = result[i + 1];
+                result[i] = newSize;
+                return new Position(result, bits);
+            }
+
+            long mask = (1L << bits) - 1;
+            long result = packed;
+
+            //Slide the larger piles that are smaller than newSize down one place, then put newSize above them
+            int i = pile;
+            while(i < count - 1 && get(i + 1) < newSize)
+            {
+                result = result & ~(mask << (i * bits)) | (long)get(i + 1) << (i * bits);
+                i++;
+            }
+            return new Position(result & ~(mask << (i * bits)) | (long)newSize << (i * bits), bits, count);
+        }
+
+        /**
+         *
+         * @return hashcode for this object
+         */
+        public int hashCode()
+        {
+            return piles != null ? Arrays.hashCode(piles) : Long.hashCode(packed);
+        }
+
+        /**
+         * Two positions are equal if they have the same piles
+         *
+         * @param o The other object
+         * @return True if o is an equal position
+         */
+        public boolean equals(Object o)
+        {
+            if(this == o)
+                return true;
+            if(!(o instanceof Position))
+                return false;
+
+            Position other = (Position)o;
+            return packed == other.packed && bits == other.bits && count == other.count
+                    && Arrays.equals(piles, other.piles);
+        }
+
+        /**
+         *
+         * @return A string representation of the object
+         */
+        public String toString()
+        {
+            StringBuilder answer = new StringBuilder();
+            for(int i = 0; i < count; i++)
+                answer.append(get(i)).append(' ');
+            return answer.toString();
+        }
+    }
+
+
     public static void main(String[] args)
     {
         Scanner in = new Scanner(System.in); //Used to read from keyboard
@@ -176,6 +667,13 @@ public class Stones implements Game
         ArrayList<Integer> initialPosition = new ArrayList<Integer>(); //Starting position
         boolean play = false;
         boolean auto = false;
+        String strategyFile = null; //Strategy followed instead of searching wherever it covers the position
+
+        if(args.length >= 2 && args[0].equals("-strategy"))
+        {
+            strategyFile = args[1];
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
 
         if(args.length < 1)
         {
@@ -232,13 +730,40 @@ public class Stones implements Game
         }
 
 
-        currentGame = new Stones(initialPosition);
+        currentGame = null;
+        try
+        {
+            currentGame = new Stones(initialPosition);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
         solver = new Solver(currentGame);
+        Ponderer ponderer = new Ponderer(currentGame, solver); //Searches while the player thinks
+        Strategy strategy = null; //Moves chosen ahead of time, null if there are none
+        if(strategyFile != null)
+        {
+            StringBuilder description = new StringBuilder("stones");
+            for(int pile : initialPosition)
+                description.append(' ').append(pile);
+            try
+            {
+                strategy = Strategy.load(currentGame, description.toString(), strategyFile);
+            }
+            catch(IOException e)
+            {
+                System.err.println(e.getMessage());
+                System.exit(-1);
+            }
+        }
         boolean valid = false;
         int autoMove = 0;
         int playerMove = 0;
         int playerPile = 0;
-        ArrayList<Integer> cpuMove;
+        int[] cpuMove;
 
         while(!currentGame.gameOver())
         {
@@ -247,6 +772,9 @@ public class Stones implements Game
                 //Gets the player's move, confirms it is valid, and then makes the move
                 if (play) {
                     valid = false;
+                    //A strategy answers every position it covers without searching, so there is nothing to ponder
+                    if(strategy == null)
+                        ponderer.start();
                     while (!valid) {
                         System.out.print("Your move (pile): ");
                         try {
@@ -265,46 +793,28 @@ public class Stones implements Game
                             System.out.println("Must choose a valid pile and remove at least 1 stone");
                         }
                     }
+                    ponderer.stop();
 
-                    ArrayList<Integer> newStones = new ArrayList<Integer>((ArrayList<Integer>) currentGame.getCurrentPosition().getData());
-                    newStones.set(playerPile, newStones.get(playerPile) - playerMove);
-
-                    currentGame.update(new Node<ArrayList<Integer>>(newStones));
+                    currentGame.take(playerPile, playerMove);
                 }
                 //Gets the AI move and then makes it
                 else {
-                    cpuMove = (ArrayList<Integer>) solver.getMove().getData();
-                    int cpuPile = 0;
-                    int cpuStones = 0;
-                    ArrayList<Integer> currentPosition = (ArrayList<Integer>) currentGame.getCurrentPosition().getData();
-
-                    for (int i = 0; i < currentPosition.size(); i++) {
-                        if (cpuMove.get(i) != currentPosition.get(i)) {
-                            cpuPile = i;
-                            cpuStones = currentPosition.get(i) - cpuMove.get(i);
-                        }
-                    }
+                    Node move = Strategy.getMove(strategy, solver, currentGame);
+                    cpuMove = currentGame.findMove(move);
 
-                    System.out.println("CPU takes " + cpuStones + " stones from pile " + cpuPile);
-                    currentGame.update(new Node<ArrayList<Integer>>(cpuMove));
+                    System.out.println("CPU takes " + cpuMove[1] + " stones from pile " + cpuMove[0]);
+                    currentGame.update(move);
                 }
             }
             //For auto mode repeatedly get AI move and switch which computer's move it is
             else
             {
-                cpuMove = (ArrayList<Integer>) solver.getMove().getData();
-                int cpuPile = 0;
-                int cpuStones = 0;
-                ArrayList<Integer> currentPosition = (ArrayList<Integer>) currentGame.getCurrentPosition().getData();
-
-                for (int i = 0; i < currentPosition.size(); i++) {
-                    if (cpuMove.get(i) != currentPosition.get(i)) {
-                        cpuPile = i;
-                        cpuStones = currentPosition.get(i) - cpuMove.get(i);
-                    }
-                }
-                System.out.println("CPU " + (autoMove + 1) + " takes " + cpuStones + " stones from pile " + cpuPile);
-                currentGame.update(new Node<ArrayList<Integer>>(cpuMove));
+                Node move = Strategy.getMove(strategy, solver, currentGame);
+                cpuMove = currentGame.findMove(move);
+
+                System.out.println("CPU " + (autoMove + 1) + " takes " + cpuMove[1] + " stones from pile "
+                        + cpuMove[0]);
+                currentGame.update(move);
                 autoMove = autoMove ^ 1;
             }
 
@@ -0,0 +1,503 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A solved game compiled down to one chosen move for every position the side that cannot lose can reach, whatever
+ * the other side plays. Following it needs no search at all, just a lookup and the game's move generator, so it plays
+ * every move in the same short time. It is much smaller than a table of every position, since only one move is kept
+ * where the side following it moves, and positions the other side would only reach by a move it never makes are left
+ * out.
+ *
+ * A strategy is saved as the positions' hash keys in sorted order, each with the index of the chosen move in
+ * getNeighbors, so the same game's move generator has to be used to follow it. verify checks every line the other side
+ * can play, on several threads, and confirms each one ends with at least the score promised.
+ *
+ * @author Jeff DeSain
+ */
+public class Strategy
+{
+    private static final String USAGE = "Usage: java Strategy -export file " + Games.USAGE + System.lineSeparator()
+            + "       java Strategy [-threads n] -verify file " + Games.USAGE; //Usage statement
+    private static final int MAGIC = 0x53545241; //Start of every strategy file, STRA
+    private static final int CHUNKS_PER_THREAD = 8; //Positions verified per thread before verifying in parallel
+
+    private final Game game; //The game the strategy is for
+    private final String description; //Description of the game, so a strategy is never loaded for a different one
+    private final int value; //Score the strategy guarantees the side following it, 1 for a win or 0 for a tie
+    private final long[] keys; //Hash keys of the positions where the strategy moves, sorted
+    private final short[] moves; //Index in getNeighbors of the move chosen for each key
+
+    private final LongAdder finished = new LongAdder(); //Finished games reached by verify
+    private final AtomicReference<String> failure = new AtomicReference<String>(); //First problem found by verify
+
+
+    /**
+     * @param game The game the strategy is for
+     * @param description Description of the game, written as for Games.parse
+     * @param value Score the strategy guarantees the side following it
+     * @param keys Hash keys of the positions where the strategy moves, sorted
+     * @param moves Index in getNeighbors of the move chosen for each key
+     */
+    private Strategy(Game game, String description, int value, long[] keys, short[] moves)
+    {
+        this.game = game;
+        this.description = description;
+        this.value = value;
+        this.keys = keys;
+        this.moves = moves;
+    }
+
+    public static void main(String[] args)
+    {
+        Game game = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean export = false;
+        String fileName = null;
+        int first = 0;
+
+        try
+        {
+            if(args.length >= 2 && args[0].equals("-threads"))
+            {
+                threads = Integer.parseInt(args[1]);
+                first = 2;
+            }
+            if(first + 2 >= args.length || threads < 1)
+                throw new IllegalArgumentException();
+
+            if(args[first].equals("-export"))
+                export = true;
+            else if(!args[first].equals("-verify"))
+                throw new IllegalArgumentException();
+            fileName = args[first + 1];
+            game = Games.parse(args, first + 2);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        String description = String.join(" ", Arrays.copyOfRange(args, first + 2, args.length));
+        try
+        {
+            long start = System.nanoTime();
+            if(export)
+            {
+                Solver solver = new Solver(game);
+                solver.setMode(Solver.PVS);
+                Strategy strategy = export(game, description, game.getCurrentPosition(), solver);
+                strategy.save(fileName);
+
+                System.out.println(strategy.size() + " positions guaranteeing " + (strategy.getValue() > 0 ? "a win"
+                        : "a tie") + " for the " + (strategy.covers(game.getCurrentPosition()) ? "first" : "second")
+                        + " player, written to " + fileName + " in " + (System.nanoTime() - start) / 1000000
+                        + " ms");
+            }
+            else
+            {
+                Strategy strategy = load(game, description, fileName);
+                boolean sound = strategy.verify(game.getCurrentPosition(), threads);
+
+                System.out.println((sound ? "Verified " : "FAILED ") + strategy.size() + " positions, "
+                        + strategy.getFinished() + " finished games reached in " + (System.nanoTime() - start)
+                        / 1000000 + " ms on " + threads + " threads");
+                if(!sound)
+                {
+                    System.out.println(strategy.getFailure());
+                    System.exit(1);
+                }
+            }
+        }
+        catch(IllegalArgumentException | IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Compiles a strategy for the side that cannot lose from a position. If the player to move wins or ties, the
+     * strategy is theirs; if they lose, it is their opponent's.
+     *
+     * @param game The game
+     * @param description Description of the game, written as for Games.parse
+     * @param start The position
+     * @param solver Finds the moves, usually with a cache large enough for the whole game
+     * @return The strategy
+     */
+    public static Strategy export(Game game, String description, Node start, Solver solver)
+    {
+        if(finished(game, start))
+            throw new IllegalArgumentException("Game is already over");
+
+        Map<Long, Integer> chosen = new HashMap<Long, Integer>();
+        int score = solver.getMove(start).getScore();
+        if(score >= 0)
+            choose(game, start, solver, chosen);
+        else
+        {
+            for(Node reply : game.getNeighbors(start))
+            {
+                if(!finished(game, reply))
+                    choose(game, reply, solver, chosen);
+            }
+        }
+
+        long[] keys = new long[chosen.size()];
+        int i = 0;
+        for(long key : chosen.keySet())
+            keys[i++] = key;
+        Arrays.sort(keys);
+
+        short[] moves = new short[keys.length];
+        for(i = 0; i < keys.length; i++)
+            moves[i] = (short)(int)chosen.get(keys[i]);
+
+        return new Strategy(game, description, Math.abs(score), keys, moves);
+    }
+
+    /**
+     * Chooses a move for a position where the strategy moves, then does the same after every reply to it
+     *
+     * @param game The game
+     * @param n The position
+     * @param solver Finds the moves
+     * @param chosen Move chosen for each position so far, by hash key
+     */
+    private static void choose(Game game, Node n, Solver solver, Map<Long, Integer> chosen)
+    {
+        long key = game.hashKey(n);
+        if(chosen.containsKey(key))
+            return;
+
+        ArrayList<Node> options = game.getNeighbors(n);
+        long bestKey = game.hashKey(solver.getMove(n));
+        int index = 0;
+        while(index < options.size() && game.hashKey(options.get(index)) != bestKey)
+            index++;
+        if(index == options.size())
+            throw new IllegalStateException("Best move is not one of getNeighbors");
+        if(index > 0xffff)
+            throw new IllegalArgumentException("Too many moves to save: " + options.size());
+        chosen.put(key, index);
+
+        Node after = options.get(index);
+        if(game.isGoal(after) || game.isDraw(after))
+            return;
+        for(Node reply : game.getNeighbors(after))
+        {
+            if(!finished(game, reply))
+                choose(game, reply, solver, chosen);
+        }
+    }
+
+    /**
+     * Checks whether a game is over, either won, certain to be a tie or with no moves left
+     *
+     * @param game The game
+     * @param n A position
+     * @return True if no more moves need to be chosen
+     */
+    private static boolean finished(Game game, Node n)
+    {
+        return game.isGoal(n) || game.isDraw(n) || game.getNeighbors(n).isEmpty();
+    }
+
+    /**
+     * Writes the strategy to a file
+     *
+     * @param fileName The file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(String fileName) throws IOException
+    {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName))))
+        {
+            out.writeInt(MAGIC);
+            out.writeUTF(description);
+            out.writeByte(value);
+            out.writeInt(keys.length);
+            for(int i = 0; i < keys.length; i++)
+            {
+                out.writeLong(keys[i]);
+                out.writeShort(moves[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a strategy written by save
+     *
+     * @param game The game the strategy is for
+     * @param description Description of the game, written as for Games.parse
+     * @param fileName The file
+     * @return The strategy
+     * @throws IOException If the file cannot be read or was written for a different game
+     */
+    public static Strategy load(Game game, String description, String fileName) throws IOException
+    {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName))))
+        {
+            if(in.readInt() != MAGIC || !in.readUTF().equals(description))
+                throw new IOException(fileName + " is not a strategy for " + description);
+
+            int value = in.readByte();
+            long[] keys = new long[in.readInt()];
+            short[] moves = new short[keys.length];
+            for(int i = 0; i < keys.length; i++)
+            {
+                keys[i] = in.readLong();
+                moves[i] = in.readShort();
+            }
+            return new Strategy(game, description, value, keys, moves);
+        }
+    }
+
+    /**
+     * Checks whether the strategy has a move for a position
+     *
+     * @param n The position
+     * @return True if the strategy moves in n
+     */
+    public boolean covers(Node n)
+    {
+        return Arrays.binarySearch(keys, game.hashKey(n)) >= 0;
+    }
+
+    /**
+     * Plays the strategy's move
+     *
+     * @param n The position
+     * @return The position after the chosen move, scored with the value the strategy guarantees, or null if the
+     * strategy does not cover n
+     */
+    public Node respond(Node n)
+    {
+        int i = Arrays.binarySearch(keys, game.hashKey(n));
+        if(i < 0)
+            return null;
+
+        Node move = game.getNeighbors(n).get(moves[i] & 0xffff);
+        move.setScore(value);
+        return move;
+    }
+
+    /**
+     * Gets the computer's move in a game's play mode: the strategy's move wherever it covers the current position, so
+     * those moves need no search at all, and the solver's move otherwise
+     *
+     * @param strategy The strategy, or null for none
+     * @param solver Searches the positions the strategy does not cover
+     * @param game The game being played
+     * @return A node containing the configuration of the move
+     */
+    public static Node getMove(Strategy strategy, Solver solver, Game game)
+    {
+        Node move = strategy == null ? null : strategy.respond(game.getCurrentPosition());
+        return move != null ? move : solver.getMove();
+    }
+
+    /**
+     * @return Score the strategy guarantees the side following it, 1 for a win or 0 for a tie
+     */
+    public int getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return Number of positions with a chosen move
+     */
+    public int size()
+    {
+        return keys.length;
+    }
+
+    /**
+     * @return Finished games reached by the last verify, counting each only once per position it was reached from
+     */
+    public long getFinished()
+    {
+        return finished.sum();
+    }
+
+    /**
+     * @return Description of the first problem found by the last verify, or null if there was none
+     */
+    public String getFailure()
+    {
+        return failure.get();
+    }
+
+    /**
+     * Follows the strategy against every move the other side can make, checking that the strategy always has a move
+     * and that every game ends with at least the score it guarantees. The positions near the start are checked on
+     * the calling thread until there are enough of them to split between threads.
+     *
+     * @param start The position the strategy was exported from
+     * @param threads Number of threads checking at once
+     * @return True if the strategy is sound
+     */
+    public boolean verify(Node start, int threads)
+    {
+        Set<Long> checked = ConcurrentHashMap.newKeySet();
+        finished.reset();
+        failure.set(null);
+
+        List<Node> frontier = new ArrayList<Node>();
+        if(covers(start))
+            frontier.add(start);
+        else
+            replies(start, frontier);
+
+        //Checking one position gives the positions after each reply, so check breadth first until there are enough
+        while(!frontier.isEmpty() && frontier.size() < threads * CHUNKS_PER_THREAD && failure.get() == null)
+        {
+            List<Node> next = new ArrayList<Node>();
+            for(Node n : frontier)
+                check(n, checked, next);
+            frontier = next;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for(Node n : frontier)
+            {
+                tasks.add(() -> {
+                    checkFrom(n, checked);
+                    return null;
+                });
+            }
+            for(Future<Void> task : executor.invokeAll(tasks))
+                task.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Verify interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        return failure.get() == null;
+    }
+
+    /**
+     * Checks every position reachable from one where the strategy moves, depth first
+     *
+     * @param n The position
+     * @param checked Hash keys of the positions already checked
+     */
+    private void checkFrom(Node n, Set<Long> checked)
+    {
+        List<Node> next = new ArrayList<Node>();
+        check(n, checked, next);
+        for(Node after : next)
+        {
+            if(failure.get() != null)
+                return;
+            checkFrom(after, checked);
+        }
+    }
+
+    /**
+     * Checks the strategy's move in one position and the replies to it
+     *
+     * @param n A position where the strategy moves
+     * @param checked Hash keys of the positions already checked
+     * @param next Receives the positions after each reply where the game goes on
+     */
+    private void check(Node n, Set<Long> checked, List<Node> next)
+    {
+        if(!checked.add(game.hashKey(n)))
+            return;
+
+        int i = Arrays.binarySearch(keys, game.hashKey(n));
+        ArrayList<Node> options = game.getNeighbors(n);
+        if(i < 0 || (moves[i] & 0xffff) >= options.size())
+        {
+            fail("No move for", n);
+            return;
+        }
+
+        Node after = options.get(moves[i] & 0xffff);
+        if(game.isGoal(after))
+        {
+            //setScore gives the score for the player to move, the other side
+            game.setScore(after, 1);
+            finished.increment();
+            if(-after.getScore() < value)
+                fail("Game lost after", n);
+            return;
+        }
+        if(game.isDraw(after))
+        {
+            finished.increment();
+            if(value > 0)
+                fail("Game tied after", n);
+            return;
+        }
+
+        replies(after, next);
+    }
+
+    /**
+     * Finds the positions after every move the other side can make, checking the ones that finish the game or can
+     * only be tied
+     *
+     * @param n A position where the other side moves
+     * @param next Receives the positions where the game goes on
+     */
+    private void replies(Node n, List<Node> next)
+    {
+        ArrayList<Node> replies = game.getNeighbors(n);
+        if(replies.isEmpty())
+        {
+            finished.increment();
+            if(value > 0)
+                fail("Game tied after", n);
+            return;
+        }
+
+        for(Node reply : replies)
+        {
+            if(game.isGoal(reply))
+            {
+                game.setScore(reply, 1);
+                finished.increment();
+                if(reply.getScore() < value)
+                    fail("Game not won after", reply);
+            }
+            else if(game.isDraw(reply) || game.getNeighbors(reply).isEmpty())
+            {
+                finished.increment();
+                if(value > 0)
+                    fail("Game tied after", reply);
+            }
+            else
+                next.add(reply);
+        }
+    }
+
+    /**
+     * Records a problem, unless one has already been found
+     *
+     * @param problem What went wrong
+     * @param n The position where it happened
+     */
+    private void fail(String problem, Node n)
+    {
+        failure.compareAndSet(null, problem + ":" + System.lineSeparator() + n.getData());
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.*;
+
+/**
+ * Optional interface for impartial games whose configurations can be sums of independent components: both players
+ * have the same moves, and each move is made in exactly one component. Solver then never searches such a game.
+ * Instead SumSolver finds the Grundy value of each component on its own and combines them, so the work grows with the
+ * sum of the component sizes rather than their product.
+ *
+ * @author Jeff DeSain
+ */
+public interface SumGame extends Game
+{
+    /**
+     * Splits a configuration into its independent components. Each component is itself a configuration of the game
+     * that getNeighbors and hashKey accept, and components with no moves may be left out.
+     *
+     * @param n A particular configuration
+     * @return The components of n, just n if it cannot be split
+     */
+    List<Node> components(Node n);
+
+    /**
+     * Whether the player who makes the last move loses (misere play) rather than wins (normal play). Misere sums are
+     * only solved correctly if every component is tame, that is it plays like a Nim heap, which is the case for
+     * single piles of stones.
+     *
+     * @return True for misere play, false for normal play
+     */
+    boolean isMisere();
+
+    /**
+     * The Grundy value of a component, for games that have a formula for it, so SumSolver does not analyse its moves.
+     * The value is for normal play even in a misere game. The default has no formula.
+     *
+     * @param component A component of some configuration
+     * @return Its Grundy value, -1 if there is no formula for it
+     */
+    default int grundy(Node component)
+    {
+        return -1;
+    }
+}
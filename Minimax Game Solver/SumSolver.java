@@ -0,0 +1,125 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Solves sums of independent components with Sprague-Grundy theory. The Grundy value of a component is the smallest
+ * value that none of its moves lead to, and a sum is lost by the player to move exactly when the Grundy values of its
+ * components XOR to 0 (with the usual exception for misere play when every component has a value below 2). Grundy
+ * values come from the game's formula where it has one, and are otherwise cached by component, so a component is only
+ * analysed once however many positions it appears in.
+ *
+ * @author Jeff DeSain
+ */
+public class SumSolver
+{
+    private SumGame game; //The game being played
+    private final ConcurrentHashMap<Long, Integer> grundyValues = new ConcurrentHashMap<Long, Integer>(); //By key
+
+    /**
+     * @param game The game being played
+     */
+    public SumSolver(SumGame game)
+    {
+        this.game = game;
+    }
+
+    /**
+     * Finds the score of a configuration for the player to move
+     *
+     * @param n A particular configuration
+     * @return 1 if the player to move wins, -1 if they lose
+     */
+    public int value(Node n)
+    {
+        int sum = 0;
+        boolean tame = true;
+
+        for(Node component : game.components(n))
+        {
+            int value = grundy(component);
+            sum ^= value;
+            if(value > 1)
+                tame = false;
+        }
+
+        //In misere play with only heaps of 0 or 1 left, the player to move wants an even number of 1s
+        boolean wins = game.isMisere() && tame ? sum == 0 : sum != 0;
+        return wins ? 1 : -1;
+    }
+
+    /**
+     * Finds the Grundy value of a component. Components the game has no formula for are worked out bottom-up with a
+     * stack of their own, so a component can be deeper than the call stack.
+     *
+     * @param component A component of some configuration
+     * @return Its Grundy value
+     */
+    public int grundy(Node component)
+    {
+        Integer known = known(component);
+        if(known != null)
+            return known;
+
+        ArrayDeque<Node> pending = new ArrayDeque<Node>(); //Components waiting on the values of their moves
+        pending.push(component);
+
+        while(!pending.isEmpty())
+        {
+            Node next = pending.peek();
+            if(known(next) != null)
+            {
+                pending.pop();
+                continue;
+            }
+
+            //Push every part whose value is missing, and only finish next once they are all known
+            BitSet reachable = new BitSet();
+            boolean ready = true;
+            for(Node move : game.getNeighbors(next))
+            {
+                //A move may split the component further
+                int value = 0;
+                for(Node part : game.components(move))
+                {
+                    Integer partValue = known(part);
+                    if(partValue == null)
+                    {
+                        pending.push(part);
+                        ready = false;
+                    }
+                    else
+                        value ^= partValue;
+                }
+                reachable.set(value);
+            }
+
+            if(ready)
+            {
+                pending.pop();
+                grundyValues.put(game.hashKey(next), reachable.nextClearBit(0));
+            }
+        }
+
+        return known(component);
+    }
+
+    /**
+     * Looks up the Grundy value of a component without analysing it
+     *
+     * @param component A component of some configuration
+     * @return Its Grundy value from the game's formula or the cache, null if it has not been found yet
+     */
+    private Integer known(Node component)
+    {
+        int value = game.grundy(component);
+        return value >= 0 ? Integer.valueOf(value) : grundyValues.get(game.hashKey(component));
+    }
+
+    /**
+     * @return Number of components whose Grundy value is cached
+     */
+    public int size()
+    {
+        return grundyValues.size();
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.*;
 import java.util.*;
 
 /**
@@ -6,10 +7,12 @@ import java.util.*;
  *
  * @author Jeff DeSain
  */
-public class TakeAway implements Game
+public class TakeAway implements RetrogradeGame, Oracle
 {
     private int coins; //Number of remaining coins
-    private final static String USAGE = "Usage: java TakeAway [play][auto] num_pennies"; //Usage statement
+    private final int startCoins; //Number of coins at the start, the most any configuration has
+    private final static String USAGE = "Usage: java TakeAway [-strategy file] [play][auto]"
+            + " num_pennies"; //Usage statement
 
     /**
      * @param coins starting number of coins
@@ -17,6 +20,7 @@ public class TakeAway implements Game
     public TakeAway(int coins)
     {
         this.coins = coins;
+        this.startCoins = coins;
     }
 
     /**
@@ -89,6 +93,131 @@ public class TakeAway implements Game
         return coins;
     }
 
+    /**
+     * Gets a 64 bit key identifying a configuration
+     *
+     * @param n A particular configuration
+     * @return The configuration's key
+     */
+    @Override
+    public long hashKey(Node n)
+    {
+        return TranspositionTable.mix((Integer)n.getData());
+    }
+
+    /**
+     * Estimates how hard a configuration is to solve
+     *
+     * @param n A particular configuration
+     * @return The number of coins, since at most one is taken per move
+     */
+    @Override
+    public int movesLeft(Node n)
+    {
+        return (Integer)n.getData();
+    }
+
+    /**
+     * Scores a configuration from the number of coins alone. Leaving a multiple of 4 plus 1 coins wins, since whatever
+     * the other player takes, taking 4 in total over the two moves leaves them another such number, until they are
+     * left with the last coin.
+     *
+     * @param n A particular configuration
+     * @return -1 if the player to move has a multiple of 4 plus 1 coins, otherwise 1
+     */
+    @Override
+    public int value(Node n)
+    {
+        return (Integer)n.getData() % 4 == 1 ? -1 : 1;
+    }
+
+    /**
+     * @return Number of configurations, one for each number of coins up to the starting number
+     */
+    @Override
+    public long stateCount()
+    {
+        return startCoins + 1;
+    }
+
+    /**
+     * Gets the configuration with a given index
+     *
+     * @param index A number of coins
+     * @return The configuration
+     */
+    @Override
+    public Node position(long index)
+    {
+        return new Node<Integer>((int)index);
+    }
+
+    /**
+     * Gets the index of a configuration
+     *
+     * @param n A particular configuration
+     * @return Its number of coins
+     */
+    @Override
+    public long index(Node n)
+    {
+        return (Integer)n.getData();
+    }
+
+    /**
+     * @return Bits needed to write any number of coins up to the starting number
+     */
+    @Override
+    public int codeBits()
+    {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(startCoins));
+    }
+
+    /**
+     * Packs a configuration into a long
+     *
+     * @param n A particular configuration
+     * @return Its number of coins
+     */
+    @Override
+    public long encode(Node n)
+    {
+        int coins = (Integer)n.getData();
+        if(coins < 0 || coins > startCoins)
+            throw new IllegalArgumentException("Not a configuration of this game: " + coins + " coins");
+        return coins;
+    }
+
+    /**
+     * Unpacks a configuration packed by encode
+     *
+     * @param code A number of coins
+     * @return The configuration
+     */
+    @Override
+    public Node decode(long code)
+    {
+        if(code < 0 || code > startCoins)
+            throw new IllegalArgumentException("Not a code of this game: " + code);
+        return position(code);
+    }
+
+    /**
+     * Returns the configurations with 1, 2 or 3 more coins
+     *
+     * @param n A particular configuration
+     * @return The configurations one move before n
+     */
+    @Override
+    public Iterable<Node> predecessors(Node n)
+    {
+        ArrayList<Node> predecessors = new ArrayList<Node>();
+        for(int i = (Integer)n.getData() + 1; i <= startCoins && predecessors.size() < 3; i++)
+            predecessors.add(new Node<Integer>(i));
+
+        return predecessors;
+    }
+
     /**
      *
      * @param n The node
@@ -108,6 +237,12 @@ public class TakeAway implements Game
         int coins = 0;
         boolean play = false; //True if the player goes first
         boolean auto = false; //True if the AI plays against AI
+        String strategyFile = null; //Strategy followed instead of searching wherever it covers the position
+
+        if (args.length >= 2 && args[0].equals("-strategy")) {
+            strategyFile = args[1];
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
 
         //Verifying program arguments
         if (args.length == 2) {
@@ -148,6 +283,16 @@ public class TakeAway implements Game
 
         boolean valid; //False until the user inputs a valid command
         solver = new Solver(currentGame);
+        Ponderer ponderer = new Ponderer(currentGame, solver); //Searches while the player thinks
+        Strategy strategy = null; //Moves chosen ahead of time, null if there are none
+        if (strategyFile != null) {
+            try {
+                strategy = Strategy.load(currentGame, "takeaway " + coins, strategyFile);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(-1);
+            }
+        }
         int playerMove = 0; //Number of coins the player removes
         int cpuMove = 0; //Number of coins the AI removes
         int autoMove = 0; //Tracks the AI turns for auto mode
@@ -159,6 +304,9 @@ public class TakeAway implements Game
                 //Gets the player's move, confirms it is valid, and then makes the move
                 if (play) {
                     valid = false;
+                    //A strategy answers every position it covers without searching, so there is nothing to ponder
+                    if (strategy == null)
+                        ponderer.start();
                     while (!valid)
                     {
                         System.out.print("Your move: ");
@@ -182,12 +330,13 @@ public class TakeAway implements Game
                             System.out.println("Must remove 1, 2, or 3 coins");
                         }
                     }
+                    ponderer.stop();
 
                     currentGame.update(new Node<Integer>(currentGame.getCoins() - playerMove));
                 }
                 //Gets the AI move and then makes it
                 else {
-                    cpuMove = (Integer) solver.getMove().getData();
+                    cpuMove = (Integer) Strategy.getMove(strategy, solver, currentGame).getData();
                     System.out.println("Computer takes " + (currentGame.getCoins() - cpuMove) + " coins");
                     currentGame.update(new Node<Integer>(cpuMove));
                 }
@@ -196,7 +345,7 @@ public class TakeAway implements Game
             //For auto mode repeatedly get AI move and switch which computer's move it is
             else
             {
-                cpuMove = (Integer) solver.getMove().getData();
+                cpuMove = (Integer) Strategy.getMove(strategy, solver, currentGame).getData();
                 System.out.println("Computer " + (autoMove + 1) + " takes " + (currentGame.getCoins() - cpuMove) + " coins");
                 currentGame.update(new Node<Integer>(cpuMove));
                 autoMove = autoMove ^ 1;
@@ -0,0 +1,246 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Load tests the solver by running many self-play games of TakeAway or Stones at once. All games of a tournament share
+ * one solver cache. Nothing is printed while the games run; a summary with throughput and per-move latency
+ * percentiles is written at the end.
+ *
+ * @author Jeff DeSain
+ */
+public class Tournament
+{
+    private static final String USAGE = "Usage: java Tournament takeaway num_games|all max_coins [threads]"
+            + System.lineSeparator()
+            + "       java Tournament stones num_games|all num_piles max_pile [threads]"; //Usage statement
+
+    private final List<Game> games; //Starting positions, one per game
+    private final int threads; //Size of the thread pool, 0 for a virtual thread per game
+    private final TranspositionTable cache = new UnboundedTable(); //Shared by every game
+
+    private final AtomicInteger firstPlayerWins = new AtomicInteger(); //Games won by the player who moved first
+    private final AtomicLong totalMoves = new AtomicLong(); //Moves made over all games
+    private final ConcurrentLinkedQueue<long[]> latencies = new ConcurrentLinkedQueue<long[]>(); //Per game move times
+
+
+    /**
+     * @param games The starting position of every game
+     * @param threads Size of the thread pool, 0 to run each game on its own virtual thread
+     */
+    public Tournament(List<Game> games, int threads)
+    {
+        this.games = games;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args)
+    {
+        List<Game> games = new ArrayList<Game>();
+        int threads = 0;
+        Random random = new Random();
+
+        try
+        {
+            if(args.length >= 3 && args[0].equals("takeaway"))
+            {
+                int maxCoins = Integer.parseInt(args[2]);
+                if(maxCoins < 1)
+                    throw new NumberFormatException();
+
+                if(args[1].equals("all"))
+                {
+                    for(int coins = 1; coins <= maxCoins; coins++)
+                        games.add(new TakeAway(coins));
+                }
+                else
+                {
+                    for(int i = Integer.parseInt(args[1]); i > 0; i--)
+                        games.add(new TakeAway(1 + random.nextInt(maxCoins)));
+                }
+
+                if(args.length == 4)
+                    threads = Integer.parseInt(args[3]);
+                else if(args.length > 4)
+                    throw new NumberFormatException();
+            }
+            else if(args.length >= 4 && args[0].equals("stones"))
+            {
+                int numPiles = Integer.parseInt(args[2]);
+                int maxPile = Integer.parseInt(args[3]);
+                if(numPiles < 1 || maxPile < 1)
+                    throw new NumberFormatException();
+
+                if(args[1].equals("all"))
+                {
+                    enumerateStones(new ArrayList<Integer>(), numPiles, maxPile, games);
+                }
+                else
+                {
+                    for(int i = Integer.parseInt(args[1]); i > 0; i--)
+                    {
+                        ArrayList<Integer> piles = new ArrayList<Integer>();
+                        for(int j = 0; j < numPiles; j++)
+                            piles.add(random.nextInt(maxPile + 1));
+
+                        //A game needs at least one stone
+                        if(piles.get(0) == 0)
+                            piles.set(0, 1);
+                        games.add(new Stones(piles));
+                    }
+                }
+
+                if(args.length == 5)
+                    threads = Integer.parseInt(args[4]);
+                else if(args.length > 5)
+                    throw new NumberFormatException();
+            }
+            else
+                throw new NumberFormatException();
+
+            if(threads < 0)
+                throw new NumberFormatException();
+        }
+        catch(NumberFormatException e)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        new Tournament(games, threads).run(out);
+        out.flush();
+        System.exit(0);
+    }
+
+    /**
+     * Adds every Stones starting position with the given number of piles and at least one stone
+     *
+     * @param piles The piles chosen so far
+     * @param numPiles Number of piles in each position
+     * @param maxPile Largest size of a pile
+     * @param games List the positions are added to
+     */
+    private static void enumerateStones(ArrayList<Integer> piles, int numPiles, int maxPile, List<Game> games)
+    {
+        if(piles.size() == numPiles)
+        {
+            Stones game = new Stones(piles);
+            if(!game.gameOver())
+                games.add(game);
+        }
+        else
+        {
+            for(int i = 0; i <= maxPile; i++)
+            {
+                piles.add(i);
+                enumerateStones(piles, numPiles, maxPile, games);
+                piles.remove(piles.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Plays every game and writes a summary
+     *
+     * @param out Where the summary is written
+     */
+    public void run(PrintWriter out)
+    {
+        ExecutorService executor = threads == 0 ? VirtualThreads.newExecutor() : Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<Future<?>>();
+
+        long start = System.nanoTime();
+        for(Game game : games)
+            results.add(executor.submit(() -> play(game)));
+
+        try
+        {
+            for(Future<?> result : results)
+                result.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        long[] moveTimes = new long[(int)totalMoves.get()];
+        int index = 0;
+        for(long[] gameTimes : latencies)
+        {
+            System.arraycopy(gameTimes, 0, moveTimes, index, gameTimes.length);
+            index += gameTimes.length;
+        }
+        Arrays.sort(moveTimes);
+
+        double seconds = elapsed / 1e9;
+        out.println("Games:              " + games.size());
+        out.println("Threads:            " + (threads == 0 ? "one virtual thread per game" : threads));
+        out.println("Moves:              " + moveTimes.length);
+        out.println("First player wins:  " + firstPlayerWins.get());
+        out.println("Second player wins: " + (games.size() - firstPlayerWins.get()));
+        out.println("Cached positions:   " + cache.size());
+        out.printf("Cache hit rate:     %.3f%n", cache.hitRate());
+        out.printf("Elapsed:            %.3f s%n", seconds);
+        out.printf("Games/sec:          %.1f%n", games.size() / seconds);
+        out.printf("Moves/sec:          %.1f%n", moveTimes.length / seconds);
+        out.println("Move latency (us):  p50 " + percentile(moveTimes, 50) + "  p90 " + percentile(moveTimes, 90)
+                + "  p99 " + percentile(moveTimes, 99) + "  p99.9 " + percentile(moveTimes, 99.9)
+                + "  max " + percentile(moveTimes, 100));
+    }
+
+    /**
+     * Has the solver play both sides of one game
+     *
+     * @param game The game, at its starting position
+     */
+    private void play(Game game)
+    {
+        Solver solver = new Solver(game, cache);
+        long[] times = new long[16];
+        int moves = 0;
+
+        while(!game.gameOver())
+        {
+            long start = System.nanoTime();
+            Node move = solver.getMove();
+            long time = System.nanoTime() - start;
+
+            if(moves == times.length)
+                times = Arrays.copyOf(times, moves * 2);
+            times[moves++] = time;
+
+            game.update(move);
+        }
+
+        //The player who takes the last coin or stone loses
+        if(moves % 2 == 0)
+            firstPlayerWins.incrementAndGet();
+
+        totalMoves.addAndGet(moves);
+        latencies.add(Arrays.copyOf(times, moves));
+    }
+
+    /**
+     * Finds a percentile of sorted move times
+     *
+     * @param sorted Move times in nanoseconds, in ascending order
+     * @param p The percentile, from 0 to 100
+     * @return The move time at that percentile in microseconds, 0 if there are no moves
+     */
+    private static long percentile(long[] sorted, double p)
+    {
+        if(sorted.length == 0)
+            return 0;
+
+        int index = (int)Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000;
+    }
+}
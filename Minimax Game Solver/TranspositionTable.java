@@ -0,0 +1,83 @@
+/**
+ * Cache of solved scores used by Solver. Scores are always from the point of view of the player to move in the
+ * configuration, and configurations are identified by the 64 bit key from Game.hashKey. Implementations must be safe
+ * to use from many threads at once.
+ *
+ * @author Jeff DeSain
+ */
+public interface TranspositionTable
+{
+    int MISS = Integer.MIN_VALUE; //Returned by lookup for a configuration that is not in the table
+    int AT_LEAST_TIE = 2; //Score of a configuration only known to be a tie or a win, from a null window search
+    int AT_MOST_TIE = -2; //Score of a configuration only known to be a tie or a loss, from a null window search
+
+    /**
+     * Finds the score of a configuration
+     *
+     * @param key The configuration's key
+     * @return The stored score, or MISS
+     */
+    int lookup(long key);
+
+    /**
+     * Saves the score of a configuration
+     *
+     * @param key The configuration's key
+     * @param score 1 if the player to move wins, -1 if they lose, 0 if tie, or AT_LEAST_TIE or AT_MOST_TIE if only a
+     *              bound is known
+     * @param work How much searching the score took, log 2 of the number of configurations searched, from 0 to 63.
+     *             Tables that must throw entries away keep the ones that took more work, and treat work outside that
+     *             range as the nearest end of it.
+     */
+    void store(long key, int score, int work);
+
+    /**
+     * Called at the start of each search from the game's current position, so tables can tell entries from earlier
+     * searches apart from new ones
+     */
+    void newSearch();
+
+    /**
+     * @return Number of configurations stored
+     */
+    long size();
+
+    /**
+     * @return Fraction of lookups that found a score
+     */
+    double hitRate();
+
+    /**
+     * Creates a table from a description, so the kind of table can be chosen on the command line:
+     *   unbounded          an UnboundedTable
+     *   mb or heap:mb      a BoundedTable of mb megabytes on the Java heap
+     *   offheap:mb         an OffHeapTable of mb megabytes outside the Java heap
+     *
+     * @param spec The description
+     * @return The table
+     * @throws IllegalArgumentException If the description is not one of the above
+     */
+    static TranspositionTable create(String spec)
+    {
+        if(spec.equals("unbounded"))
+            return new UnboundedTable();
+        if(spec.startsWith("offheap:"))
+            return new OffHeapTable(Integer.parseInt(spec.substring("offheap:".length())));
+        if(spec.startsWith("heap:"))
+            return new BoundedTable(Integer.parseInt(spec.substring("heap:".length())));
+        return new BoundedTable(Integer.parseInt(spec));
+    }
+
+    /**
+     * Mixes the bits of a hash so that every input bit affects every output bit (the SplitMix64 finalizer)
+     *
+     * @param z The hash
+     * @return The mixed hash
+     */
+    static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
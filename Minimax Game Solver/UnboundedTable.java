@@ -0,0 +1,75 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Transposition table that keeps every score it is given. Simple and never loses work, but it grows without limit,
+ * so it is only suitable for searches that are known to be small.
+ *
+ * @author Jeff DeSain
+ */
+public class UnboundedTable implements TranspositionTable
+{
+    private final ConcurrentHashMap<Long, Integer> scores = new ConcurrentHashMap<Long, Integer>(); //Scores by key
+    private final LongAdder lookups = new LongAdder(); //Number of lookups
+    private final LongAdder hits = new LongAdder(); //Number of lookups that found a score
+
+    /**
+     * Finds the score of a configuration
+     *
+     * @param key The configuration's key
+     * @return The stored score, or MISS
+     */
+    @Override
+    public int lookup(long key)
+    {
+        Integer score = scores.get(key);
+
+        lookups.increment();
+        if(score == null)
+            return MISS;
+
+        hits.increment();
+        return score;
+    }
+
+    /**
+     * Saves the score of a configuration
+     *
+     * @param key The configuration's key
+     * @param score 1 if the player to move wins, -1 if they lose, 0 if tie, or a bound
+     * @param work Not used, every entry is kept
+     */
+    @Override
+    public void store(long key, int score, int work)
+    {
+        scores.put(key, score);
+    }
+
+    /**
+     * Starts a new search
+     */
+    @Override
+    public void newSearch()
+    {
+        //Nothing is ever thrown away, so the age of an entry does not matter
+    }
+
+    /**
+     * @return Number of configurations stored
+     */
+    @Override
+    public long size()
+    {
+        return scores.size();
+    }
+
+    /**
+     * @return Fraction of lookups that found a score
+     */
+    @Override
+    public double hitRate()
+    {
+        long total = lookups.sum();
+        return total == 0 ? 0 : (double)hits.sum() / total;
+    }
+}
@@ -0,0 +1,47 @@
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+
+/**
+ * Creates executors that run every task on its own virtual thread. Virtual threads only exist on Java 21 and later,
+ * so they are looked up reflectively and a cached pool of platform threads is used on older JVMs.
+ *
+ * @author Jeff DeSain
+ */
+public class VirtualThreads
+{
+    /**
+     * Creates an executor that starts a new virtual thread for each task
+     *
+     * @return The executor
+     */
+    public static ExecutorService newExecutor()
+    {
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)factory.invoke(null);
+        }
+        catch(ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Checks whether executors from newExecutor run on virtual threads
+     *
+     * @return True if virtual threads are available
+     */
+    public static boolean available()
+    {
+        try
+        {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        }
+        catch(NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+}